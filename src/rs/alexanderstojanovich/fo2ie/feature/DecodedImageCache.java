@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.feature;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import rs.alexanderstojanovich.fo2ie.frm.FRMFrameSource;
+
+/**
+ * Decoded image cache shared by all the image wrappers. Images are kept per
+ * file (canonical path) together with the file size and modification time they
+ * were decoded from, so rebuilding the module decodes again only the files
+ * which have changed. Entries are softly referenced (collected when memory is
+ * low) and at most MAX_ENTRIES are kept in LRU order.
+ *
+ * Decoded images are shared (not copied) and must not be modified.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class DecodedImageCache {
+
+    public static final int MAX_ENTRIES = 512;
+
+    private static final DecodedImageCache INSTANCE = new DecodedImageCache();
+
+    // entries by file (and palette for FRMs) in access order (eldest first)
+    private final LinkedHashMap<String, SoftReference<Entry>> entries = new LinkedHashMap<String, SoftReference<Entry>>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SoftReference<Entry>> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hits = 0L;
+    private long misses = 0L;
+    private long stale = 0L;
+    private long evictions = 0L;
+
+    /**
+     * Decoded content of the image file
+     */
+    public static class Entry {
+
+        private final long length;
+        private final long lastModified;
+
+        // images (frames), null for FRMs (wrappers convert frames of the source)
+        private final BufferedImage[] images;
+        // lazy frame source for FRMs, otherwise null
+        private final FRMFrameSource frameSource;
+        private final int fps;
+        private final int offsetX;
+        private final int offsetY;
+
+        /**
+         * Creates new entry of the file (decoded just now)
+         *
+         * @param file image file
+         * @param images decoded images (frames) or null for FRM
+         * @param frameSource FRM frame source or null
+         * @param fps frames per second
+         * @param offsetX frame offset x
+         * @param offsetY frame offset y
+         */
+        public Entry(File file, BufferedImage[] images, FRMFrameSource frameSource, int fps, int offsetX, int offsetY) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.images = images;
+            this.frameSource = frameSource;
+            this.fps = fps;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        // whether file is the same as when it was decoded
+        private boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+        public BufferedImage[] getImages() {
+            return images;
+        }
+
+        public FRMFrameSource getFrameSource() {
+            return frameSource;
+        }
+
+        public int getFps() {
+            return fps;
+        }
+
+        public int getOffsetX() {
+            return offsetX;
+        }
+
+        public int getOffsetY() {
+            return offsetY;
+        }
+
+    }
+
+    private DecodedImageCache() {
+    }
+
+    public static DecodedImageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Makes cache key from the image file and the palette it is decoded with
+     *
+     * @param file image file
+     * @param variant palette name (FRMs) or null
+     * @return cache key
+     */
+    public static String key(File file, String variant) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException ex) {
+            path = file.getAbsolutePath();
+        }
+        return (variant != null) ? path + "/" + variant : path;
+    }
+
+    /**
+     * Gets decoded content of the file if the file has not changed since it
+     * was decoded (marking it as most recently used)
+     *
+     * @param file image file
+     * @param variant palette name (FRMs) or null
+     * @return cached entry or null if not in the cache or file has changed
+     */
+    public synchronized Entry get(File file, String variant) {
+        final String key = key(file, variant);
+        SoftReference<Entry> ref = entries.get(key);
+        Entry entry = (ref != null) ? ref.get() : null;
+        if (entry != null && entry.isCurrent(file)) {
+            hits++;
+            return entry;
+        }
+        if (entry != null) {
+            stale++;
+        }
+        if (ref != null) {
+            entries.remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Puts decoded content of the file into the cache. If other thread has
+     * put the content of the same (unchanged) file meanwhile, that one is
+     * kept and returned, so wrappers share the same images.
+     *
+     * @param file image file
+     * @param variant palette name (FRMs) or null
+     * @param entry decoded content
+     * @return entry in the cache
+     */
+    public synchronized Entry put(File file, String variant, Entry entry) {
+        final String key = key(file, variant);
+        SoftReference<Entry> ref = entries.get(key);
+        Entry current = (ref != null) ? ref.get() : null;
+        if (current != null && current.isCurrent(file)) {
+            return current;
+        }
+        entries.put(key, new SoftReference<>(entry));
+        return entry;
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets cache statistics report
+     *
+     * @return statistics report
+     */
+    public synchronized String getStatistics() {
+        final long lookups = hits + misses;
+        return String.format("Image cache: %d files, hits %d, misses %d (changed %d), hit rate %.1f%%, evictions %d",
+                entries.size(), hits, misses, stale, (lookups > 0) ? 100.0 * hits / lookups : 0.0, evictions);
+    }
+
+}
@@ -19,12 +19,14 @@ package rs.alexanderstojanovich.fo2ie.feature;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 import java.util.Objects;
 import javax.imageio.ImageIO;
 import rs.alexanderstojanovich.fo2ie.frm.FOFRM;
 import rs.alexanderstojanovich.fo2ie.frm.FRM;
+import rs.alexanderstojanovich.fo2ie.frm.FRMDescriptor;
+import rs.alexanderstojanovich.fo2ie.frm.FRMFrameSource;
 import rs.alexanderstojanovich.fo2ie.frm.ImageData;
+import rs.alexanderstojanovich.fo2ie.frm.Palette;
 import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 
 /**
@@ -38,14 +40,23 @@ public class ImageWrapper implements FeatureValue {
     private int offsetY = 0;
 
     private String value = ""; // is actually filename
+    private File file; // file images are loaded from
     private BufferedImage[] images;
+    // lazy frame source for FRMs (images are null, frames are converted on
+    // each access, only the bounded number of decoded ones is kept)
+    private FRMFrameSource frameSource;
+    // palette FRM frames are decoded with and encoded to
+    private Palette palette = Palette.getDefault();
 
     public ImageWrapper(String value) {
         this.value = value;
     }
 
     /**
-     * Loads image from the filesystem. Call this after constructor.
+     * Loads image from the filesystem. Call this after constructor. FRM frames
+     * of direction 0 are only probed here and decoded on first access. Images
+     * (frames) are shared through the decoded image cache with the other
+     * wrappers of the same file.
      *
      * @throws IOException
      */
@@ -54,30 +65,46 @@ public class ImageWrapper implements FeatureValue {
         File inDir = instance.getInDir();
         final File imgFile = new File(inDir.getPath() + File.separator + value);
 
+        file = imgFile;
+        frameSource = null;
         if (imgFile.exists()
                 && value.toLowerCase().matches(IMG_EXT_REGEX)) {
+            // files which have not changed since they were decoded are taken from the cache
+            final DecodedImageCache cache = DecodedImageCache.getInstance();
             if (value.toLowerCase().matches(IMG_IO_REGEX)) {
-                images = new BufferedImage[1];
-                images[0] = ImageIO.read(imgFile);
+                DecodedImageCache.Entry entry = cache.get(imgFile, null);
+                if (entry == null) {
+                    entry = cache.put(imgFile, null, new DecodedImageCache.Entry(imgFile, new BufferedImage[]{ImageIO.read(imgFile)}, null, 0, 0, 0));
+                }
+                images = entry.getImages();
             } else if (value.toLowerCase().matches(IMG_FRM_REGEX)) {
-                FRM frm = new FRM(imgFile);
-                fps = frm.getFps();
-
-                List<ImageData> frames = frm.getFrames();
-                images = new BufferedImage[frames.size()];
-                offsetX = (!frames.isEmpty()) ? frames.get(0).getOffsetX() : 0;
-                offsetY = (!frames.isEmpty()) ? frames.get(0).getOffsetY() : 0;
-                int index = 0;
-                for (ImageData frame : frames) {
-                    images[index++] = frame.toBufferedImage();
+                // frames are converted with the palette, so it is part of the key
+                DecodedImageCache.Entry entry = cache.get(imgFile, palette.getName());
+                if (entry == null) {
+                    FRMFrameSource source = new FRMFrameSource(imgFile);
+                    FRMDescriptor descriptor = source.getDescriptor();
+                    entry = cache.put(imgFile, palette.getName(), new DecodedImageCache.Entry(imgFile,
+                            null, source, descriptor.getFps(),
+                            (descriptor.getFrameCount() > 0) ? descriptor.getFrameOffsetX(0) : 0,
+                            (descriptor.getFrameCount() > 0) ? descriptor.getFrameOffsetY(0) : 0));
                 }
+                frameSource = entry.getFrameSource();
+                fps = entry.getFps();
+
+                images = null;
+                offsetX = entry.getOffsetX();
+                offsetY = entry.getOffsetY();
             } else if (value.toLowerCase().matches(IMG_FOFRM_REGEX)) {
-                FOFRM fofrm = new FOFRM(imgFile);
-                fps = fofrm.getFps();
-                images = fofrm.getImages();
+                DecodedImageCache.Entry entry = cache.get(imgFile, null);
+                if (entry == null) {
+                    FOFRM fofrm = new FOFRM(imgFile);
+                    entry = cache.put(imgFile, null, new DecodedImageCache.Entry(imgFile, fofrm.getImages(), null, fofrm.getFps(), fofrm.getOffsetX(), fofrm.getOffsetY()));
+                }
+                fps = entry.getFps();
+                images = entry.getImages();
 
-                offsetX = fofrm.getOffsetX();
-                offsetY = fofrm.getOffsetY();
+                offsetX = entry.getOffsetX();
+                offsetY = entry.getOffsetY();
             }
         }
     }
@@ -95,7 +122,7 @@ public class ImageWrapper implements FeatureValue {
         if (value.toLowerCase().matches(IMG_IO_REGEX)) {
             ImageIO.write(images[0], "png", imgFile);
         } else if (value.toLowerCase().matches(IMG_FRM_REGEX)) {
-            FRM frm = new FRM(fps, images, offsetX, offsetY);
+            FRM frm = new FRM(fps, getImages(), palette, offsetX, offsetY);
             frm.write(imgFile);
         } else if (value.toLowerCase().matches(IMG_FOFRM_REGEX)) {
             FOFRM fofrm = new FOFRM(fps, images.length, images, offsetX, offsetY);
@@ -104,14 +131,67 @@ public class ImageWrapper implements FeatureValue {
     }
 
     /**
-     * Get the image
+     * Get the image. FRM frames are converted into new array (not kept).
      *
      * @return featured images (more images if animation)
      */
     public BufferedImage[] getImages() {
+        if (frameSource != null) {
+            BufferedImage[] frames = new BufferedImage[frameSource.getFramesPerDirection()];
+            for (int index = 0; index < frames.length; index++) {
+                frames[index] = getImage(index);
+            }
+            return frames;
+        }
         return images;
     }
 
+    /**
+     * Get one image (frame). FRM frame is decoded by the frame source if it
+     * is not one of its decoded frames and converted (sharing its pixels) on
+     * each access.
+     *
+     * @param index image index
+     * @return image with that index
+     */
+    public BufferedImage getImage(int index) {
+        if (frameSource != null) {
+            return frameSource.getFrame(0, index).toIndexedImage(palette);
+        }
+        return images[index];
+    }
+
+    /**
+     * Get indexed frame data (FRM only)
+     *
+     * @param index frame index
+     * @return indexed frame data (null if image is not FRM)
+     */
+    public ImageData getFrame(int index) {
+        return (frameSource != null) ? frameSource.getFrame(0, index) : null;
+    }
+
+    /**
+     * Whether images are palette-indexed (FRM frames)
+     *
+     * @return is indexed
+     */
+    public boolean isIndexed() {
+        return frameSource != null;
+    }
+
+    /**
+     * Get number of images (frames) without decoding them
+     *
+     * @return image count (zero if not loaded)
+     */
+    public int getImageCount() {
+        if (frameSource != null) {
+            return frameSource.getFramesPerDirection();
+        }
+        return (images == null) ? 0 : images.length;
+    }
+
     /**
      * Value of this image wrapper (image filename)
      *
@@ -142,6 +222,28 @@ public class ImageWrapper implements FeatureValue {
         this.value = value;
     }
 
+    public Palette getPalette() {
+        return palette;
+    }
+
+    /**
+     * Get the file images are loaded from
+     *
+     * @return image file (null if images are not loaded)
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Sets palette for FRM frames. Call this before loading images.
+     *
+     * @param palette palette to decode (and encode) FRM frames with
+     */
+    public void setPalette(Palette palette) {
+        this.palette = palette;
+    }
+
     public int getFps() {
         return fps;
     }
@@ -17,11 +17,14 @@
 package rs.alexanderstojanovich.fo2ie.frm;
 
 import java.awt.image.BufferedImage;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -48,9 +51,10 @@ public class FRM {
 
     private int frameSize;
 
-    // 16 MB Buffer
-    private final byte buffer[] = new byte[0x1000000];
-    private int pos = 0x0000;
+    // size of the FRM header in bytes (preceding the frame data)
+    public static final int HEADER_SIZE = 62;
+    // size of each frame header in bytes (preceding the frame pixels)
+    public static final int FRAME_HEADER_SIZE = 12;
 
     /**
      * Create FRM by reading it from the file
@@ -66,10 +70,11 @@ public class FRM {
      *
      * @param fps frames per second rate of the animation
      * @param images array of images
+     * @param palette palette to convert images to
      * @param offsetX offset array of X direction for image array
      * @param offsetY offset array of Y direction for image array
      */
-    public FRM(int fps, BufferedImage[] images, int offsetX, int offsetY) {
+    public FRM(int fps, BufferedImage[] images, Palette palette, int offsetX, int offsetY) {
         this.version = 0x04;
         this.fps = fps;
         this.actionFrame = 0x00;
@@ -80,11 +85,11 @@ public class FRM {
             if (index == direction * framesPerDirection) {
                 this.offset[direction++] = frameSize;
             }
-            frameSize += image.getWidth() * image.getHeight() + 12;
-            ImageData imgData = new ImageData(image, offsetX, offsetY);
-            frames.add(imgData);
+            frameSize += image.getWidth() * image.getHeight() + FRAME_HEADER_SIZE;
+            frames.add(new ImageData(image.getWidth(), image.getHeight(), offsetX, offsetY));
             index++;
         }
+        quantize(images, palette);
     }
 
     /**
@@ -99,11 +104,12 @@ public class FRM {
      * @param shiftY required Y shift array
      * @param offset frame offset array (lesser important)
      * @param images array of images
+     * @param palette palette to convert images to
      * @param offsetsX offset array of X direction for image array
      * @param offsetsY offset array of Y direction for image array
      */
     public FRM(int version, int fps, int actionFrame, int framesPerDirection,
-            int[] shiftX, int[] shiftY, int[] offset, BufferedImage[] images, int[] offsetsX, int[] offsetsY) {
+            int[] shiftX, int[] shiftY, int[] offset, BufferedImage[] images, Palette palette, int[] offsetsX, int[] offsetsY) {
         this.version = version;
         this.fps = fps;
         this.actionFrame = actionFrame;
@@ -117,123 +123,160 @@ public class FRM {
             if (index == direction * framesPerDirection) {
                 this.offset[direction++] = frameSize;
             }
-            frameSize += image.getWidth() * image.getHeight() + 12;
-            ImageData imgData = new ImageData(image, offsetsX[index], offsetsY[index]);
-            frames.add(imgData);
+            frameSize += image.getWidth() * image.getHeight() + FRAME_HEADER_SIZE;
+            frames.add(new ImageData(image.getWidth(), image.getHeight(), offsetsX[index], offsetsY[index]));
             index++;
         }
+        quantize(images, palette);
     }
 
-    private void loadFromFile(File file) {
-        FileInputStream fis = null;
-        try {
-            fis = new FileInputStream(file);
-            fis.read(buffer);
-        } catch (FileNotFoundException ex) {
-            FO2IELogger.reportError(ex.getMessage(), ex);
-        } catch (IOException ex) {
-            FO2IELogger.reportError(ex.getMessage(), ex);
-        } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException ex) {
-                    FO2IELogger.reportError(ex.getMessage(), ex);
-                }
-            }
+    // converts images to the (already sized) frames in parallel, frame order is kept
+    private void quantize(BufferedImage[] images, Palette palette) {
+        QuantizeTask.quantize(images, frames.toArray(new ImageData[frames.size()]), palette.getLookup());
+    }
+
+    /**
+     * Probes the FRM file reading only the header and the per-frame headers.
+     * Pixel data is skipped over, so this is cheap even for large animations.
+     *
+     * @param path FRM file path
+     * @return immutable FRM descriptor
+     * @throws IOException if file cannot be read or is truncated
+     */
+    public static FRMDescriptor probe(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return probe(channel);
         }
     }
 
-    private void storeToFile(File file) {
-        if (file.exists()) {
-            file.delete();
+    static FRMDescriptor probe(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        // big endian motorola
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        readFully(channel, header, 0L);
+
+        final int version = header.getInt();
+        final int fps = header.getShort() & 0xFFFF;
+        final int actionFrame = header.getShort() & 0xFFFF;
+        final int framesPerDirection = header.getShort() & 0xFFFF;
+        //----------------------------------------------------------------------
+        final int[] shiftX = new int[6];
+        for (int i = 0; i < 6; i++) {
+            shiftX[i] = header.getShort();
         }
-        FileOutputStream fos = null;
-        try {
-            fos = new FileOutputStream(file);
-            fos.write(buffer, 0, pos);
-        } catch (FileNotFoundException ex) {
-            FO2IELogger.reportError(ex.getMessage(), ex);
-        } catch (IOException ex) {
-            FO2IELogger.reportError(ex.getMessage(), ex);
-        } finally {
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException ex) {
-                    FO2IELogger.reportError(ex.getMessage(), ex);
-                }
+
+        final int[] shiftY = new int[6];
+        for (int i = 0; i < 6; i++) {
+            shiftY[i] = header.getShort();
+        }
+        //----------------------------------------------------------------------
+        final int[] offset = new int[6];
+        for (int i = 0; i < 6; i++) {
+            offset[i] = header.getInt();
+        }
+        //----------------------------------------------------------------------
+        final int frameSize = header.getInt();
+        //----------------------------------------------------------------------
+        int count = 0;
+        int[] widths = new int[Math.max(framesPerDirection, 1)];
+        int[] heights = new int[widths.length];
+        int[] offsetsX = new int[widths.length];
+        int[] offsetsY = new int[widths.length];
+        long[] dataPositions = new long[widths.length];
+
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        long pos = HEADER_SIZE;
+        long total = 0L;
+        while (total < frameSize && pos + FRAME_HEADER_SIZE <= size) {
+            frameHeader.clear();
+            readFully(channel, frameHeader, pos);
+            final int width = frameHeader.getShort() & 0xFFFF;
+            final int height = frameHeader.getShort() & 0xFFFF;
+            frameHeader.getInt(); // frame area (width * height)
+            final int offsetX = frameHeader.getShort();
+            final int offsetY = frameHeader.getShort();
+
+            if (count == widths.length) {
+                widths = Arrays.copyOf(widths, 2 * count);
+                heights = Arrays.copyOf(heights, 2 * count);
+                offsetsX = Arrays.copyOf(offsetsX, 2 * count);
+                offsetsY = Arrays.copyOf(offsetsY, 2 * count);
+                dataPositions = Arrays.copyOf(dataPositions, 2 * count);
             }
+            widths[count] = width;
+            heights[count] = height;
+            offsetsX[count] = offsetX;
+            offsetsY[count] = offsetY;
+            dataPositions[count] = pos + FRAME_HEADER_SIZE;
+            count++;
+
+            // skip over the pixels
+            pos += FRAME_HEADER_SIZE + (long) width * height;
+            total += FRAME_HEADER_SIZE + (long) width * height;
         }
+
+        return new FRMDescriptor(version, fps, actionFrame, framesPerDirection, shiftX, shiftY, offset, frameSize,
+                Arrays.copyOf(widths, count), Arrays.copyOf(heights, count),
+                Arrays.copyOf(offsetsX, count), Arrays.copyOf(offsetsY, count), Arrays.copyOf(dataPositions, count));
+    }
+
+    // reads until buffer is full (or fails if end of file has been reached)
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int num = channel.read(buffer, pos);
+            if (num < 0) {
+                throw new EOFException("Unexpected end of FRM file!");
+            }
+            pos += num;
+        }
+        buffer.flip();
     }
 
     /**
-     * Read binary data from the specified FRM file
+     * Read binary data from the specified FRM file. Pixels of each frame are
+     * read straight into its pixel array (file is not mapped, so it is not
+     * locked after reading).
      *
      * @param file is specified FRM file to read from
      */
     private void read(File file) {
-        Arrays.fill(buffer, (byte) 0x00);
         frames.clear();
-        if (file.exists()) {
-            loadFromFile(file);
-        } else {
+        if (!file.exists()) {
             return;
         }
-        //----------------------------------------------------------------------
-        pos = 0x0000;
-        // big endian motorola
-        version = ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] << 16) & 0xFF) | ((buffer[pos + 2] << 8) & 0xFF) | ((buffer[pos + 3]) & 0xFF);
-        pos += 4;
-        fps = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-        pos += 2;
-        actionFrame = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-        pos += 2;
-        framesPerDirection = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-        pos += 2;
-        //----------------------------------------------------------------------                
-        for (int i = 0; i < 6; i++) {
-            shiftX[i] = (buffer[pos] << 8) | buffer[pos + 1];
-            pos += 2;
-        }
 
-        for (int i = 0; i < 6; i++) {
-            shiftY[i] = (buffer[pos] << 8) | buffer[pos + 1];
-            pos += 2;
-        }
-        //----------------------------------------------------------------------        
-        for (int i = 0; i < 6; i++) {
-            offset[i] = ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16) | ((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
-            pos += 4;
-        }
-        //----------------------------------------------------------------------
-        frameSize = ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16) | ((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
-        pos += 4;
-        //----------------------------------------------------------------------
-        int total = 0;
-        while (total < frameSize) {
-            for (int j = 0; j < framesPerDirection; j++) {
-                final int width = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-                pos += 2;
-                final int height = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-                pos += 2;
-                //--------------------------------------------------------------
-                pos += 4;
-                //--------------------------------------------------------------
-                final int offsetX = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-                pos += 2;
-                final int offsetY = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
-                pos += 2;
-                //--------------------------------------------------------------
-                ImageData imgData = new ImageData(width, height, offsetX, offsetY);
-                for (int py = 0; py < imgData.getHeight(); py++) {
-                    for (int px = 0; px < imgData.getWidth(); px++) {
-                        byte index = buffer[pos++];
-                        imgData.setPixel(px, py, index);
-                    }
-                }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            FRMDescriptor descriptor = probe(channel);
+            version = descriptor.getVersion();
+            fps = descriptor.getFps();
+            actionFrame = descriptor.getActionFrame();
+            framesPerDirection = descriptor.getFramesPerDirection();
+            shiftX = descriptor.getShiftX();
+            shiftY = descriptor.getShiftY();
+            System.arraycopy(descriptor.getOffset(), 0, offset, 0, offset.length);
+            frameSize = descriptor.getFrameSize();
+            //------------------------------------------------------------------
+            for (int i = 0; i < descriptor.getFrameCount(); i++) {
+                ImageData imgData = new ImageData(descriptor.getFrameWidth(i), descriptor.getFrameHeight(i),
+                        descriptor.getFrameOffsetX(i), descriptor.getFrameOffsetY(i));
+                // pixels are stored row-major same as image data
+                readFully(channel, ByteBuffer.wrap(imgData.getData()), descriptor.getFrameDataPosition(i));
                 frames.add(imgData);
-                total += 12 + width * height;
+            }
+        } catch (EOFException ex) {
+            FO2IELogger.reportError("Invalid FRM file " + file.getName() + "!", ex);
+        } catch (IOException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    FO2IELogger.reportError(ex.getMessage(), ex);
+                }
             }
         }
     }
@@ -244,82 +287,67 @@ public class FRM {
      * @param file to write binary FRM content to
      */
     public void write(File file) {
-        pos = 0x0000;
+        int size = HEADER_SIZE;
+        for (ImageData frame : frames) {
+            size += FRAME_HEADER_SIZE + frame.getWidth() * frame.getHeight();
+        }
         // big endian motorola
-        buffer[pos] = (byte) (version >> 24);
-        buffer[pos + 1] = (byte) (version >> 16);
-        buffer[pos + 2] = (byte) (version >> 8);
-        buffer[pos + 3] = (byte) (version);
-        pos += 4;
-        buffer[pos] = (byte) (fps >> 8);
-        buffer[pos + 1] = (byte) (fps);
-        pos += 2;
-        buffer[pos] = (byte) (actionFrame >> 8);
-        buffer[pos + 1] = (byte) (actionFrame);
-        pos += 2;
-        buffer[pos] = (byte) (framesPerDirection >> 8);
-        buffer[pos + 1] = (byte) (framesPerDirection);
-        pos += 2;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(version);
+        buffer.putShort((short) fps);
+        buffer.putShort((short) actionFrame);
+        buffer.putShort((short) framesPerDirection);
         //----------------------------------------------------------------------                
         for (int i = 0; i < 6; i++) {
-            buffer[pos] = (byte) (shiftX[i] >> 8);
-            buffer[pos + 1] = (byte) (shiftX[i]);
-            pos += 2;
+            buffer.putShort((short) shiftX[i]);
         }
 
         for (int i = 0; i < 6; i++) {
-            buffer[pos] = (byte) (shiftY[i] >> 8);
-            buffer[pos + 1] = (byte) (shiftY[i]);
-            pos += 2;
+            buffer.putShort((short) shiftY[i]);
         }
         //----------------------------------------------------------------------        
         for (int i = 0; i < 6; i++) {
-            buffer[pos] = (byte) (offset[i] >> 24);
-            buffer[pos + 1] = (byte) (offset[i] >> 16);
-            buffer[pos + 2] = (byte) (offset[i] >> 8);
-            buffer[pos + 3] = (byte) (offset[i]);
-            pos += 4;
+            buffer.putInt(offset[i]);
         }
         //----------------------------------------------------------------------
-        buffer[pos] = (byte) (frameSize >> 24);
-        buffer[pos + 1] = (byte) (frameSize >> 16);
-        buffer[pos + 2] = (byte) (frameSize >> 8);
-        buffer[pos + 3] = (byte) (frameSize);
-        pos += 4;
+        buffer.putInt(frameSize);
         //----------------------------------------------------------------------
         for (ImageData frame : frames) {
-            int width = frame.getWidth();
-            buffer[pos] = (byte) (width >> 8);
-            buffer[pos + 1] = (byte) (width);
-            pos += 2;
-            int height = frame.getHeight();
-            buffer[pos] = (byte) (height >> 8);
-            buffer[pos + 1] = (byte) (height);
-            pos += 2;
+            buffer.putShort((short) frame.getWidth());
+            buffer.putShort((short) frame.getHeight());
             //--------------------------------------------------------------
-            final int area = frame.getWidth() * frame.getHeight();
-            buffer[pos] = (byte) (area >> 24);
-            buffer[pos + 1] = (byte) (area >> 16);
-            buffer[pos + 2] = (byte) (area >> 8);
-            buffer[pos + 3] = (byte) (area);
-            pos += 4;
-            final int offsetX = frame.getOffsetX();
-            buffer[pos] = (byte) (offsetX >> 8);
-            buffer[pos + 1] = (byte) (offsetX);
-            pos += 2;
-            final int offsetY = frame.getOffsetY();
-            buffer[pos] = (byte) (offsetY >> 8);
-            buffer[pos + 1] = (byte) (offsetY);
-            pos += 2;
+            buffer.putInt(frame.getWidth() * frame.getHeight());
+            buffer.putShort((short) frame.getOffsetX());
+            buffer.putShort((short) frame.getOffsetY());
             //--------------------------------------------------------------                
-            for (int py = 0; py < frame.getHeight(); py++) {
-                for (int px = 0; px < frame.getWidth(); px++) {
-                    buffer[pos++] = frame.getPixel(px, py);
+            buffer.put(frame.getData());
+        }
+        buffer.flip();
+
+        storeToFile(file, buffer);
+    }
+
+    private void storeToFile(File file, ByteBuffer buffer) {
+        if (file.exists()) {
+            file.delete();
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    FO2IELogger.reportError(ex.getMessage(), ex);
                 }
             }
         }
-
-        storeToFile(file);
     }
 
     public int getVersion() {
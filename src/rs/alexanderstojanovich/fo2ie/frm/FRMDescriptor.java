@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.frm;
+
+/**
+ * Immutable FRM metadata (header and per-frame headers) obtained without
+ * decoding any pixels. Get one with {@link FRM#probe(java.nio.file.Path)}.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public final class FRMDescriptor {
+
+    private final int version;
+    private final int fps;
+    private final int actionFrame;
+    private final int framesPerDirection;
+
+    private final int[] shiftX;
+    private final int[] shiftY;
+    private final int[] offset;
+
+    private final int frameSize;
+
+    // per-frame headers
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] offsetsX;
+    private final int[] offsetsY;
+    // file position of the first pixel of each frame
+    private final long[] dataPositions;
+
+    FRMDescriptor(int version, int fps, int actionFrame, int framesPerDirection,
+            int[] shiftX, int[] shiftY, int[] offset, int frameSize,
+            int[] widths, int[] heights, int[] offsetsX, int[] offsetsY, long[] dataPositions) {
+        this.version = version;
+        this.fps = fps;
+        this.actionFrame = actionFrame;
+        this.framesPerDirection = framesPerDirection;
+        this.shiftX = shiftX;
+        this.shiftY = shiftY;
+        this.offset = offset;
+        this.frameSize = frameSize;
+        this.widths = widths;
+        this.heights = heights;
+        this.offsetsX = offsetsX;
+        this.offsetsY = offsetsY;
+        this.dataPositions = dataPositions;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public int getActionFrame() {
+        return actionFrame;
+    }
+
+    public int getFramesPerDirection() {
+        return framesPerDirection;
+    }
+
+    public int[] getShiftX() {
+        return shiftX.clone();
+    }
+
+    public int[] getShiftY() {
+        return shiftY.clone();
+    }
+
+    public int[] getOffset() {
+        return offset.clone();
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Number of frames (in all directions) present in the file
+     *
+     * @return frame count
+     */
+    public int getFrameCount() {
+        return widths.length;
+    }
+
+    /**
+     * Width of the first frame (or zero if there are no frames)
+     *
+     * @return frame 0 width
+     */
+    public int getWidth() {
+        return (widths.length > 0) ? widths[0] : 0;
+    }
+
+    /**
+     * Height of the first frame (or zero if there are no frames)
+     *
+     * @return frame 0 height
+     */
+    public int getHeight() {
+        return (heights.length > 0) ? heights[0] : 0;
+    }
+
+    public int getFrameWidth(int frame) {
+        return widths[frame];
+    }
+
+    public int getFrameHeight(int frame) {
+        return heights[frame];
+    }
+
+    public int getFrameOffsetX(int frame) {
+        return offsetsX[frame];
+    }
+
+    public int getFrameOffsetY(int frame) {
+        return offsetsY[frame];
+    }
+
+    /**
+     * Gets position in the file where pixels of the frame start
+     *
+     * @param frame frame index
+     * @return file position of frame pixels
+     */
+    public long getFrameDataPosition(int frame) {
+        return dataPositions[frame];
+    }
+
+}
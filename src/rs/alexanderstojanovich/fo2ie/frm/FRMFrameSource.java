@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.frm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
+
+/**
+ * Lazy FRM frame source. Keeps only the frame table, file is not held open
+ * (nor mapped) and frame is decoded on first access reading just its
+ * bytes. Decoded frames are kept in a bounded LRU
+ * cache, so memory scales with the frames actually shown.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class FRMFrameSource {
+
+    public static final int DEFAULT_CACHE_CAPACITY = 8;
+
+    private final File file;
+    private final FRMDescriptor descriptor;
+
+    private final int framesPerDirection;
+    private final int directionCount;
+
+    // decoded frames, least recently used are evicted first
+    private final Map<Integer, ImageData> cache;
+
+    /**
+     * Opens FRM frame source with default cache capacity
+     *
+     * @param file FRM binary file
+     * @throws IOException if file cannot be read
+     */
+    public FRMFrameSource(File file) throws IOException {
+        this(file, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Opens FRM frame source
+     *
+     * @param file FRM binary file
+     * @param cacheCapacity max number of decoded frames kept in memory
+     * @throws IOException if file cannot be read
+     */
+    public FRMFrameSource(File file, final int cacheCapacity) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            this.descriptor = FRM.probe(channel);
+        }
+
+        final int frameCount = descriptor.getFrameCount();
+        // zero frames per direction means all the frames are in one direction
+        if (descriptor.getFramesPerDirection() > 0 && descriptor.getFramesPerDirection() <= frameCount) {
+            this.framesPerDirection = descriptor.getFramesPerDirection();
+        } else {
+            this.framesPerDirection = frameCount;
+        }
+        this.directionCount = (framesPerDirection == 0) ? 0 : frameCount / framesPerDirection;
+
+        this.cache = new LinkedHashMap<Integer, ImageData>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ImageData> eldest) {
+                return size() > Math.max(cacheCapacity, 1);
+            }
+        };
+    }
+
+    /**
+     * Gets frame with given index (counting all directions). Frame is decoded
+     * on first access.
+     *
+     * @param index frame index
+     * @return frame image data
+     */
+    public synchronized ImageData getFrame(int index) {
+        ImageData frame = cache.get(index);
+        if (frame == null) {
+            frame = new ImageData(descriptor.getFrameWidth(index), descriptor.getFrameHeight(index),
+                    descriptor.getFrameOffsetX(index), descriptor.getFrameOffsetY(index));
+            // frame which cannot be read stays transparent (and is read again next time)
+            if (decode(index, frame)) {
+                cache.put(index, frame);
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Gets frame of given direction. Frame is decoded on first access.
+     *
+     * @param direction direction (orientation) in [0, 6)
+     * @param frame frame index in that direction
+     * @return frame image data
+     */
+    public ImageData getFrame(int direction, int frame) {
+        return getFrame(direction * framesPerDirection + frame);
+    }
+
+    // reads frame pixels from the file (file is open only meanwhile)
+    private boolean decode(int index, ImageData imgData) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FRM.readFully(channel, ByteBuffer.wrap(imgData.getData()), descriptor.getFrameDataPosition(index));
+            return true;
+        } catch (IOException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Number of currently decoded (cached) frames
+     *
+     * @return cached frame count
+     */
+    public synchronized int getCachedFrameCount() {
+        return cache.size();
+    }
+
+    public FRMDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public int getFrameCount() {
+        return descriptor.getFrameCount();
+    }
+
+    public int getFramesPerDirection() {
+        return framesPerDirection;
+    }
+
+    public int getDirectionCount() {
+        return directionCount;
+    }
+
+}
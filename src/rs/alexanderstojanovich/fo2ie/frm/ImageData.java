@@ -16,8 +16,10 @@
  */
 package rs.alexanderstojanovich.fo2ie.frm;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 
 /**
  *
@@ -52,47 +54,21 @@ public class ImageData {
     }
 
     /**
-     * Creates new image data from image (converts image to indexed then writes
-     * to the data)
+     * Converts rows of the image to indexed and writes them to the data. Rows
+     * are independent so distinct row ranges may be converted concurrently.
      *
-     * @param image original image to get the data from
-     * @param offsetX frame offset in X direction
-     * @param offsetY frame offset in Y direction
+     * @param image original image (same dimension as this image data)
+     * @param lookup palette lookup
+     * @param fromRow first row (inclusive)
+     * @param toRow last row (exclusive)
      */
-    public ImageData(BufferedImage image, int offsetX, int offsetY) {
-        this.width = image.getWidth();
-        this.height = image.getHeight();
-        this.data = new byte[width * height];
-        for (int px = 0; px < width; px++) {
-            for (int py = 0; py < height; py++) {
-                int e = width * py + px;
-                int rgb = image.getRGB(px, py);
-                byte index = 0;
-                Color col = new Color(rgb, true);
-                if (col.getAlpha() != 0) {
-                    int minDeviation = 255 * 1000;
-                    int minIndex = -1;
-                    for (int rgbi : Palette.getColors()) {
-                        Color coli = new Color(rgbi);
-                        int deviation = 299 * Math.abs(col.getRed() - coli.getRed())
-                                + 587 * Math.abs(col.getGreen() - coli.getGreen())
-                                + 114 * Math.abs(col.getBlue() - coli.getBlue());
-                        if (deviation < minDeviation) {
-                            minDeviation = deviation;
-                            minIndex = index;
-                            if (deviation == 0) {
-                                break;
-                            }
-                        }
-                        index++;
-                    }
-
-                    data[e] = (byte) minIndex;
-                }
-            }
+    void quantize(BufferedImage image, PaletteLookup lookup, int fromRow, int toRow) {
+        // row-major, one row of pixels at the time
+        final int[] row = new int[width];
+        for (int py = fromRow; py < toRow; py++) {
+            image.getRGB(0, py, width, 1, row, 0, width);
+            lookup.indexOf(row, 0, data, width * py, width);
         }
-        this.offsetX = offsetX;
-        this.offsetY = offsetY;
     }
 
     /**
@@ -120,18 +96,35 @@ public class ImageData {
     }
 
     /**
-     * Makes Buffered Image based on preloaded Palette and pixel data
+     * Makes indexed Buffered Image based on given Palette and pixel data. No
+     * pixels are copied, image is backed by this pixel data (changes to either
+     * are visible in both).
+     *
+     * @param palette palette to take the colors from
+     * @return indexed Buffered Image with this pixel data.
+     */
+    public BufferedImage toIndexedImage(Palette palette) {
+        DataBufferByte dataBuffer = new DataBufferByte(data, data.length);
+        WritableRaster raster = Raster.createInterleavedRaster(dataBuffer, width, height, width, 1, new int[]{0}, null);
+        return new BufferedImage(palette.getColorModel(), raster, false, null);
+    }
+
+    /**
+     * Makes ARGB Buffered Image based on given Palette and pixel data (copy).
+     * Use this only when true color image is required, otherwise prefer
+     * {@link #toIndexedImage(rs.alexanderstojanovich.fo2ie.frm.Palette)}.
      *
-     * @return Buffered Image with this pixel data.
+     * @param palette palette to take the colors from
+     * @return ARGB Buffered Image with this pixel data.
      */
-    public BufferedImage toBufferedImage() {
+    public BufferedImage toARGBImage(Palette palette) {
         BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        for (int px = 0; px < width; px++) {
-            for (int py = 0; py < height; py++) {
-                int e = width * py + px;
-                result.setRGB(px, py, Palette.getColors()[data[e] & 0xFF]);
-            }
+        // row-major, whole image at once
+        final int[] argb = new int[data.length];
+        for (int e = 0; e < data.length; e++) {
+            argb[e] = palette.getColor(data[e]);
         }
+        result.setRGB(0, 0, width, height, argb, 0, width);
         return result;
     }
 
@@ -16,90 +16,213 @@
  */
 package rs.alexanderstojanovich.fo2ie.frm;
 
-import java.awt.Color;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
 import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
 
 /**
+ * Immutable 256 color palette, index 0 - transparent. Loaded palettes are
+ * cached (by resource name or canonical file path) and can be shared between
+ * threads freely.
  *
  * @author Alexander Stojanovich <coas91@rocketmail.com>
  */
-public class Palette {
+public final class Palette {
 
+    public static final String DEFAULT_PALETTE = "Fallout Palette.act";
+
+    // size of the palette file (256 RGB triplets)
+    private static final int PALETTE_SIZE = 768;
+
+    // loaded palettes, key is resource name or canonical path
+    private static final Map<String, Palette> PALETTE_MAP = new ConcurrentHashMap<>();
+
+    // name of the resource or the file
+    private final String name;
     // All colors in the palette, required for an indexed model
-    private static int colors[];
+    private final int[] colors = new int[256];
     // Color buffer aka color map
-    private static byte colBuff[];
-    // whether or not palette is loaded or not
-    private static boolean loaded = false;
+    private final byte[] colBuff = new byte[1024];
+    // RGB to palette entry lookup (for converting images to indexed)
+    private final PaletteLookup lookup;
+    // color model for indexed images (shares nothing mutable)
+    private final IndexColorModel colorModel;
+
+    /**
+     * Creates palette from the palette file content
+     *
+     * @param name name of the resource or the file
+     * @param buff RGB triplets
+     */
+    private Palette(String name, byte[] buff) {
+        this.name = name;
+        for (int i = 0; i < buff.length / 3; i++) {
+            final int red = buff[i * 3] & 0xFF;
+            final int green = buff[i * 3 + 1] & 0xFF;
+            final int blue = buff[i * 3 + 2] & 0xFF;
+            final int alpha = (i == 0) ? 0 : 0xFF;
+            colors[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+            colBuff[4 * i] = (byte) red;
+            colBuff[4 * i + 1] = (byte) green;
+            colBuff[4 * i + 2] = (byte) blue;
+            colBuff[4 * i + 3] = (byte) alpha;
+        }
+        this.lookup = new PaletteLookup(colors);
+        this.colorModel = new IndexColorModel(8, colors.length, colors, 0, true, -1, DataBuffer.TYPE_BYTE);
+    }
 
     //--------------------------------------------------------------------------
     // A - STATIC METHODS
     //--------------------------------------------------------------------------     
     /**
-     * Load palette with given file name, index 0 - transparent
+     * Gets the stock Fallout palette (from the resource folder)
+     *
+     * @return default palette (null if it cannot be loaded)
+     */
+    public static Palette getDefault() {
+        return load(DEFAULT_PALETTE);
+    }
+
+    /**
+     * Load palette with given file name from the resource folder. Palette is
+     * read only once, subsequent calls return the same instance.
      *
      * @param fileName palette filename
+     * @return loaded palette (null if it cannot be loaded)
      */
-    public static void load(String fileName) {
-        loaded = false;
-        InputStream in = Palette.class.getResourceAsStream(GUI.RESOURCES_DIR + fileName);
-        byte[] buff = null;
-        if (in != null) {
-            buff = new byte[768];
+    public static Palette load(String fileName) {
+        return PALETTE_MAP.computeIfAbsent(fileName, key -> {
+            InputStream in = Palette.class.getResourceAsStream(GUI.RESOURCES_DIR + key);
+            if (in == null) {
+                FO2IELogger.reportError("Cannot load palette " + key + "!", null);
+                return null;
+            }
+            return read(key, in);
+        });
+    }
+
+    /**
+     * Load palette from the filesystem. Palette is read only once (per
+     * canonical path), subsequent calls return the same instance.
+     *
+     * @param file palette file
+     * @return loaded palette (null if it cannot be loaded)
+     */
+    public static Palette load(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+            return null;
+        }
+        return PALETTE_MAP.computeIfAbsent(path, key -> {
+            try {
+                return read(key, new FileInputStream(key));
+            } catch (IOException ex) {
+                FO2IELogger.reportError("Cannot load palette " + key + "!", null);
+                FO2IELogger.reportError(ex.getMessage(), ex);
+            }
+            return null;
+        });
+    }
+
+    // reads palette from the stream (and closes it)
+    private static Palette read(String name, InputStream in) {
+        byte[] buff = new byte[PALETTE_SIZE];
+        int total = 0;
+        try {
+            int num;
+            while (total < buff.length && (num = in.read(buff, total, buff.length - total)) != -1) {
+                total += num;
+            }
+        } catch (IOException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+            return null;
+        } finally {
             try {
-                in.read(buff);
                 in.close();
             } catch (IOException ex) {
                 FO2IELogger.reportError(ex.getMessage(), ex);
             }
         }
 
-        if (buff != null) {
-            int index = 0;
-            colors = new int[256];
-            colBuff = new byte[1024];
-            for (int i = 0; i < buff.length / 3; i++) {
-                Color col = new Color(buff[i * 3] & 0xFF, buff[i * 3 + 1] & 0xFF, buff[i * 3 + 2] & 0xFF, (i == 0) ? 0 : 0xFF);
-                colors[index] = col.getRGB();
-                colBuff[4 * index] = (byte) col.getRed();
-                colBuff[4 * index + 1] = (byte) col.getGreen();
-                colBuff[4 * index + 2] = (byte) col.getBlue();
-                colBuff[4 * index + 3] = (byte) col.getAlpha();
-                index++;
-            }
-            loaded = true;
+        if (total < buff.length) {
+            FO2IELogger.reportError("Palette " + name + " is too short!", null);
+            return null;
         }
+
+        return new Palette(name, buff);
     }
 
+    //--------------------------------------------------------------------------
+    // B - GETTERS 
+    //-------------------------------------------------------------------------- 
     /**
-     * asynch reset - returns palette into initial state
+     * Gets name of the resource or the file this palette is loaded from
+     *
+     * @return palette name
      */
-    public static void reset() {
-        loaded = false;
-        colors = null;
-        colBuff = null;
+    public String getName() {
+        return name;
     }
 
-    //--------------------------------------------------------------------------
-    // B - STATIC GETTERS 
-    //-------------------------------------------------------------------------- 
     /**
-     * Gets Colors of the palette
+     * Gets color (ARGB) of the palette entry
      *
-     * @return palette itself
+     * @param index palette entry
+     * @return color of the entry
      */
-    public static int[] getColors() {
-        return colors;
+    public int getColor(int index) {
+        return colors[index & 0xFF];
     }
 
-    public static byte[] getColBuff() {
-        return colBuff;
+    /**
+     * Gets Colors of the palette (copy)
+     *
+     * @return palette colors (ARGB)
+     */
+    public int[] getColors() {
+        return colors.clone();
     }
 
-    public static boolean isLoaded() {
-        return loaded;
+    /**
+     * Gets color map of the palette (copy), RGBA per entry
+     *
+     * @return color map
+     */
+    public byte[] getColBuff() {
+        return colBuff.clone();
     }
+
+    /**
+     * Gets RGB to palette entry lookup built on load
+     *
+     * @return palette lookup
+     */
+    public PaletteLookup getLookup() {
+        return lookup;
+    }
+
+    /**
+     * Gets color model for indexed images with this palette
+     *
+     * @return indexed color model
+     */
+    public IndexColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
 }
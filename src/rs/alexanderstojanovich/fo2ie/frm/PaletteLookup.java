@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.frm;
+
+import java.util.Arrays;
+
+/**
+ * RGB to palette index lookup. RGB space is quantized into cells and for each
+ * cell a (short) list of palette entries which could be nearest to any color
+ * of the cell is precomputed. Mapping a pixel is a search over that list only.
+ * Result is exactly the same as linear search over whole palette with weighted
+ * (299, 587, 114) deviation, including ties (lowest index wins). Immutable,
+ * safe to share between threads.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public final class PaletteLookup {
+
+    // weights of the deviation per color channel
+    private static final int WEIGHT_RED = 299;
+    private static final int WEIGHT_GREEN = 587;
+    private static final int WEIGHT_BLUE = 114;
+    // it's the starting deviation, palette entry must be below it to match
+    private static final int MAX_DEVIATION = 255 * 1000;
+
+    // cell is 8x8x8 colors, there are 32x32x32 cells
+    private static final int CELL_SHIFT = 3;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    private static final int CELLS_PER_CHANNEL = 256 >> CELL_SHIFT;
+
+    private final int[] reds = new int[256];
+    private final int[] greens = new int[256];
+    private final int[] blues = new int[256];
+
+    // candidates of cell c are candidates[cellStart[c]] .. candidates[cellStart[c + 1] - 1]
+    private final int[] cellStart;
+    private final byte[] candidates;
+
+    /**
+     * Builds the lookup for given palette colors (ARGB, alpha is ignored)
+     *
+     * @param colors palette colors (up to 256 entries)
+     */
+    public PaletteLookup(int[] colors) {
+        final int num = Math.min(colors.length, 256);
+        for (int i = 0; i < num; i++) {
+            reds[i] = (colors[i] >> 16) & 0xFF;
+            greens[i] = (colors[i] >> 8) & 0xFF;
+            blues[i] = colors[i] & 0xFF;
+        }
+
+        final int cellNum = CELLS_PER_CHANNEL * CELLS_PER_CHANNEL * CELLS_PER_CHANNEL;
+        cellStart = new int[cellNum + 1];
+        byte[] cands = new byte[cellNum * 4];
+        int count = 0;
+
+        final int[] minDev = new int[num];
+        for (int cr = 0; cr < CELLS_PER_CHANNEL; cr++) {
+            for (int cg = 0; cg < CELLS_PER_CHANNEL; cg++) {
+                for (int cb = 0; cb < CELLS_PER_CHANNEL; cb++) {
+                    final int cell = (cr * CELLS_PER_CHANNEL + cg) * CELLS_PER_CHANNEL + cb;
+                    cellStart[cell] = count;
+                    // smallest of the furthest deviations over the cell
+                    int bound = Integer.MAX_VALUE;
+                    for (int i = 0; i < num; i++) {
+                        minDev[i] = WEIGHT_RED * minDist(reds[i], cr) + WEIGHT_GREEN * minDist(greens[i], cg) + WEIGHT_BLUE * minDist(blues[i], cb);
+                        int maxDev = WEIGHT_RED * maxDist(reds[i], cr) + WEIGHT_GREEN * maxDist(greens[i], cg) + WEIGHT_BLUE * maxDist(blues[i], cb);
+                        bound = Math.min(bound, maxDev);
+                    }
+                    // entry which is further than some other entry everywhere in the cell cannot win
+                    for (int i = 0; i < num; i++) {
+                        if (minDev[i] <= bound) {
+                            if (count == cands.length) {
+                                cands = Arrays.copyOf(cands, 2 * cands.length);
+                            }
+                            cands[count++] = (byte) i;
+                        }
+                    }
+                }
+            }
+        }
+        cellStart[cellNum] = count;
+        candidates = Arrays.copyOf(cands, count);
+    }
+
+    // min distance of the value to the cell interval
+    private static int minDist(int value, int cell) {
+        final int lo = cell << CELL_SHIFT;
+        final int hi = lo + CELL_SIZE - 1;
+        if (value < lo) {
+            return lo - value;
+        } else if (value > hi) {
+            return value - hi;
+        }
+        return 0;
+    }
+
+    // max distance of the value to the cell interval
+    private static int maxDist(int value, int cell) {
+        final int lo = cell << CELL_SHIFT;
+        final int hi = lo + CELL_SIZE - 1;
+        return Math.max(Math.abs(value - lo), Math.abs(value - hi));
+    }
+
+    /**
+     * Gets palette entry for the pixel. Fully transparent pixels map to 0
+     * (transparent entry).
+     *
+     * @param argb pixel color (ARGB)
+     * @return palette entry
+     */
+    public byte indexOf(int argb) {
+        if ((argb >>> 24) == 0) {
+            return 0;
+        }
+        final int red = (argb >> 16) & 0xFF;
+        final int green = (argb >> 8) & 0xFF;
+        final int blue = argb & 0xFF;
+        final int cell = ((red >> CELL_SHIFT) * CELLS_PER_CHANNEL + (green >> CELL_SHIFT)) * CELLS_PER_CHANNEL + (blue >> CELL_SHIFT);
+
+        int minDeviation = MAX_DEVIATION;
+        int minIndex = -1;
+        for (int c = cellStart[cell]; c < cellStart[cell + 1]; c++) {
+            final int i = candidates[c] & 0xFF;
+            int deviation = WEIGHT_RED * Math.abs(red - reds[i])
+                    + WEIGHT_GREEN * Math.abs(green - greens[i])
+                    + WEIGHT_BLUE * Math.abs(blue - blues[i]);
+            if (deviation < minDeviation) {
+                minDeviation = deviation;
+                minIndex = i;
+                if (deviation == 0) {
+                    break;
+                }
+            }
+        }
+
+        return (byte) minIndex;
+    }
+
+    /**
+     * Maps row of pixels to palette entries
+     *
+     * @param argb source pixels (ARGB)
+     * @param srcOff offset in the source
+     * @param dst destination palette entries
+     * @param dstOff offset in the destination
+     * @param length number of pixels
+     */
+    public void indexOf(int[] argb, int srcOff, byte[] dst, int dstOff, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOff + i] = indexOf(argb[srcOff + i]);
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.frm;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join conversion of images (frames) to indexed image data. Frames are
+ * split in halves until one is left, large frames are further split into row
+ * bands. Each task writes to its own rows, result is the same as serial.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+class QuantizeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // frames (or bands) smaller than this are converted without splitting
+    private static final int BAND_PIXELS = 0x10000;
+
+    private final BufferedImage[] images;
+    private final ImageData[] frames;
+    private final PaletteLookup lookup;
+
+    private final int frameFrom;
+    private final int frameTo;
+    private final int rowFrom;
+    private final int rowTo;
+
+    private QuantizeTask(BufferedImage[] images, ImageData[] frames, PaletteLookup lookup,
+            int frameFrom, int frameTo, int rowFrom, int rowTo) {
+        this.images = images;
+        this.frames = frames;
+        this.lookup = lookup;
+        this.frameFrom = frameFrom;
+        this.frameTo = frameTo;
+        this.rowFrom = rowFrom;
+        this.rowTo = rowTo;
+    }
+
+    /**
+     * Converts images to image data in parallel (in the common pool)
+     *
+     * @param images source images
+     * @param frames target image data (same dimensions as images, same order)
+     * @param lookup palette lookup (read-only, shared)
+     */
+    static void quantize(BufferedImage[] images, ImageData[] frames, PaletteLookup lookup) {
+        if (frames.length > 0) {
+            ForkJoinPool.commonPool().invoke(new QuantizeTask(images, frames, lookup, 0, frames.length, 0, -1));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (frameTo - frameFrom > 1) {
+            final int mid = (frameFrom + frameTo) >>> 1;
+            invokeAll(new QuantizeTask(images, frames, lookup, frameFrom, mid, 0, -1),
+                    new QuantizeTask(images, frames, lookup, mid, frameTo, 0, -1));
+        } else {
+            final ImageData frame = frames[frameFrom];
+            final int from = rowFrom;
+            // negative means all the rows of the frame
+            final int to = (rowTo < 0) ? frame.getHeight() : rowTo;
+            if ((to - from) > 1 && (long) (to - from) * frame.getWidth() > BAND_PIXELS) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new QuantizeTask(images, frames, lookup, frameFrom, frameTo, from, mid),
+                        new QuantizeTask(images, frames, lookup, frameFrom, frameTo, mid, to));
+            } else {
+                frame.quantize(images[frameFrom], lookup, from, to);
+            }
+        }
+    }
+
+}
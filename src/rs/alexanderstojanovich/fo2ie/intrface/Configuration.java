@@ -45,12 +45,16 @@ public class Configuration {
     private Color hintCol = Color.ORANGE;
     private Color canvasCol = Color.BLUE;
     private int textureSize = 1024;
+    private long textureBudget = 256L * 1024L * 1024L; // bytes of cached image textures
+    private int uploadsPerFrame = 8; // atlas regions uploaded per frame (in the background)
 
     private boolean keepAspectRatio = false;
     private String defaultIni = "default.ini";
 
     private boolean ignoreErrors = false;
 
+    private boolean debugMode = false; // counts GL calls per frame
+
     private static Configuration instance;
 
     private int animationTicks = 80; // will be used as TPS in GameTime
@@ -129,6 +133,18 @@ public class Configuration {
                                     textureSize = number;
                                 }
                                 break;
+                            case "TextureBudget":
+                                long budget = Long.parseLong(words[1]);
+                                if (budget >= 0L) {
+                                    textureBudget = budget;
+                                }
+                                break;
+                            case "UploadsPerFrame":
+                                int uploads = Integer.parseInt(words[1]);
+                                if (uploads > 0) {
+                                    uploadsPerFrame = uploads;
+                                }
+                                break;
                             case "AnimationTicks":
                                 int numx = Integer.parseInt(words[1]);
                                 if (numx >= 0) {
@@ -141,6 +157,9 @@ public class Configuration {
                             case "IgnoreErrors":
                                 ignoreErrors = Boolean.parseBoolean(words[1]);
                                 break;
+                            case "DebugMode":
+                                debugMode = Boolean.parseBoolean(words[1]);
+                                break;
                         }
                     }
                 }
@@ -182,9 +201,12 @@ public class Configuration {
             pw.println("CanvasColor = " + writeRGBA(canvasCol));
             pw.println("QMarkColor = " + writeRGBA(qmarkCol));
             pw.println("TextureSize = " + textureSize);
+            pw.println("TextureBudget = " + textureBudget);
+            pw.println("UploadsPerFrame = " + uploadsPerFrame);
             pw.println("AnimationTicks = " + animationTicks);
             pw.println("KeepAspectRatio = " + keepAspectRatio);
             pw.println("IgnoreErrors = " + ignoreErrors);
+            pw.println("DebugMode = " + debugMode);
         } catch (FileNotFoundException ex) {
             FO2IELogger.reportError(ex.getMessage(), ex);
         } finally {
@@ -271,10 +293,34 @@ public class Configuration {
         this.textureSize = textureSize;
     }
 
+    public long getTextureBudget() {
+        return textureBudget;
+    }
+
+    public void setTextureBudget(long textureBudget) {
+        this.textureBudget = textureBudget;
+    }
+
+    public int getUploadsPerFrame() {
+        return uploadsPerFrame;
+    }
+
+    public void setUploadsPerFrame(int uploadsPerFrame) {
+        this.uploadsPerFrame = uploadsPerFrame;
+    }
+
     public void setIgnoreErrors(boolean ignoreErrors) {
         this.ignoreErrors = ignoreErrors;
     }
 
+    public boolean isDebugMode() {
+        return debugMode;
+    }
+
+    public void setDebugMode(boolean debugMode) {
+        this.debugMode = debugMode;
+    }
+
     public int getAnimationTicks() {
         return animationTicks;
     }
@@ -33,8 +33,6 @@ import rs.alexanderstojanovich.fo2ie.intrface.Intrface;
 import rs.alexanderstojanovich.fo2ie.intrface.Resolution;
 import rs.alexanderstojanovich.fo2ie.intrface.ResolutionPragma;
 import rs.alexanderstojanovich.fo2ie.ogl.GLComponent;
-import rs.alexanderstojanovich.fo2ie.ogl.PrimitiveQuad;
-import rs.alexanderstojanovich.fo2ie.ogl.Text;
 import rs.alexanderstojanovich.fo2ie.util.Pair;
 import rs.alexanderstojanovich.fo2ie.util.ScalingUtils;
 
@@ -50,8 +48,8 @@ public abstract class ComponentEditor extends JFrame {
         if (instance == null) {
             instance = new ComponentEditor() {
                 @Override
-                public void execute() {
-                    gui.buildModuleComponents();
+                public void execute(FeatureKey featureKey, FeatureValue featureValue, String oldValue) {
+                    gui.updateModuleComponents(featureKey, featureValue, oldValue);
                     gui.updateBaseFeaturePreview();
                     gui.updateDerivedFeaturePreview();
                     gui.updateComponentsPreview();
@@ -121,17 +119,7 @@ public abstract class ComponentEditor extends JFrame {
                 if (featureValue instanceof MyRectangle) {
                     MyRectangle myChngdRect = (MyRectangle) featureValue;
 
-                    glComponent.getPos().x += (int) spinPosX.getValue() - posX;
-                    glComponent.getPos().y += (int) spinPosY.getValue() - posY;
-
-                    if (glComponent instanceof Text) {
-                        Text textKey = (Text) glComponent;
-                        PrimitiveQuad primitive = textKey.getOverlay();
-
-                        primitive.getPos().x += (int) spinPosX.getValue() - posX;
-                        primitive.getPos().y += (int) spinPosY.getValue() - posY;
-                    }
-
+                    // component itself is moved by the module update (on execute)
                     Pair<Float, Float> skvp = new Pair<>(1.0f, 1.0f);
 
                     myChngdRect.minX += Math.round(((int) spinPosX.getValue() - posX) / skvp.getKey());
@@ -142,8 +130,8 @@ public abstract class ComponentEditor extends JFrame {
                     featureValue.setStringValue(myChngdRect.getStringValue());
                 }
 
-                execute();
                 apply(featureKey, featureValue, intrface);
+                execute(featureKey, featureValue, strFVal);
 
                 ComponentEditor.this.dispose();
             }
@@ -199,17 +187,7 @@ public abstract class ComponentEditor extends JFrame {
                 if (featureValue instanceof MyRectangle) {
                     MyRectangle myChngdRect = (MyRectangle) featureValue;
 
-                    glComponent.getPos().x += (int) spinPosX.getValue() - posX;
-                    glComponent.getPos().y += (int) spinPosY.getValue() - posY;
-
-                    if (glComponent instanceof Text) {
-                        Text textKey = (Text) glComponent;
-                        PrimitiveQuad primitive = textKey.getOverlay();
-
-                        primitive.getPos().x += (int) spinPosX.getValue() - posX;
-                        primitive.getPos().y += (int) spinPosY.getValue() - posY;
-                    }
-
+                    // component itself is moved by the module update (on execute)
                     Pair<Float, Float> skvp = ScalingUtils.scaleXYFactor(resolution.getWidth(), resolution.getHeight(), ModuleBuildTask.modeWidth, ModuleBuildTask.modeHeight);
 
                     myChngdRect.minX += Math.round(((int) spinPosX.getValue() - posX) / skvp.getKey());
@@ -220,8 +198,8 @@ public abstract class ComponentEditor extends JFrame {
                     featureValue.setStringValue(myChngdRect.getStringValue());
                 }
 
-                execute();
                 apply(featureKey, featureValue, intrface);
+                execute(featureKey, featureValue, strFVal);
 
                 ComponentEditor.this.dispose();
             }
@@ -248,7 +226,11 @@ public abstract class ComponentEditor extends JFrame {
 
     /**
      * Execute (command) on set
+     *
+     * @param featureKey edited feature key
+     * @param featureValue edited feature value
+     * @param oldValue string value before the edit
      */
-    public abstract void execute();
+    public abstract void execute(FeatureKey featureKey, FeatureValue featureValue, String oldValue);
 
 }
@@ -47,8 +47,8 @@ public abstract class FeatValueEditor extends JFrame {
         if (instance == null) {
             instance = new FeatValueEditor() {
                 @Override
-                public void execute() {
-                    gui.buildModuleComponents();
+                public void execute(FeatureKey featureKey, FeatureValue featureValue, String oldValue) {
+                    gui.updateModuleComponents(featureKey, featureValue, oldValue);
                     gui.updateBaseFeaturePreview();
                     gui.updateComponentsPreview();
                     gui.updateDerivedFeaturePreview();
@@ -111,8 +111,8 @@ public abstract class FeatValueEditor extends JFrame {
                     @Override
                     public void actionPerformed(ActionEvent e) {
                         featureValue.setStringValue(txtFld.getText());
-                        execute();
                         apply(featureKey, featureValue, intrface);
+                        execute(featureKey, featureValue, strFVal);
 
                         FeatValueEditor.this.dispose();
                     }
@@ -147,8 +147,8 @@ public abstract class FeatValueEditor extends JFrame {
                     @Override
                     public void actionPerformed(ActionEvent e) {
                         featureValue.setStringValue(txtVal.getText());
-                        execute();
                         apply(featureKey, featureValue, intrface);
+                        execute(featureKey, featureValue, strFVal);
 
                         FeatValueEditor.this.dispose();
                     }
@@ -192,8 +192,8 @@ public abstract class FeatValueEditor extends JFrame {
                         myRect4.minY = (int) spinY.getValue();
                         myRect4.maxX = (int) spinZ.getValue();
                         myRect4.maxY = (int) spinW.getValue();
-                        execute();
                         apply(featureKey, featureValue, intrface);
+                        execute(featureKey, featureValue, strFVal);
 
                         FeatValueEditor.this.dispose();
                     }
@@ -247,8 +247,8 @@ public abstract class FeatValueEditor extends JFrame {
                     @Override
                     public void actionPerformed(ActionEvent e) {
                         featureValue.setStringValue(txtFld.getText());
-                        execute();
                         apply(featureKey, featureValue, intrface, resolution);
+                        execute(featureKey, featureValue, strFVal);
 
                         FeatValueEditor.this.dispose();
                     }
@@ -283,8 +283,8 @@ public abstract class FeatValueEditor extends JFrame {
                     @Override
                     public void actionPerformed(ActionEvent e) {
                         featureValue.setStringValue(txtVal.getText());
-                        execute();
                         apply(featureKey, featureValue, intrface, resolution);
+                        execute(featureKey, featureValue, strFVal);
 
                         FeatValueEditor.this.dispose();
                     }
@@ -328,8 +328,8 @@ public abstract class FeatValueEditor extends JFrame {
                         myRect4.minY = (int) spinY.getValue();
                         myRect4.maxX = (int) spinZ.getValue();
                         myRect4.maxY = (int) spinW.getValue();
-                        execute();
                         apply(featureKey, featureValue, intrface, resolution);
+                        execute(featureKey, featureValue, strFVal);
 
                         FeatValueEditor.this.dispose();
                     }
@@ -363,7 +363,11 @@ public abstract class FeatValueEditor extends JFrame {
 
     /**
      * Execute (command) on set
+     *
+     * @param featureKey edited feature key
+     * @param featureValue edited feature value
+     * @param oldValue string value before the edit
      */
-    public abstract void execute();
+    public abstract void execute(FeatureKey featureKey, FeatureValue featureValue, String oldValue);
 
 }
@@ -20,7 +20,6 @@ import com.jogamp.newt.opengl.GLWindow;
 import com.jogamp.opengl.GLCapabilities;
 import com.jogamp.opengl.GLProfile;
 import com.jogamp.opengl.awt.GLCanvas;
-import com.jogamp.opengl.util.FPSAnimator;
 import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.Toolkit;
@@ -28,6 +27,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.net.URL;
@@ -102,9 +102,9 @@ public class GUI extends javax.swing.JFrame {
     private static final Configuration cfg = Configuration.getInstance();
     private static final DefaultComboBoxModel<Section.SectionName> DCBM = new DefaultComboBoxModel<>(Section.SectionName.values());
     private final Intrface intrface = new Intrface();
-    private final FPSAnimator fpsAnim = new FPSAnimator(GL_CANVAS, FPSAnimator.DEFAULT_FRAMES_PER_INTERVAL, true);
+    private final RenderScheduler renderScheduler = new RenderScheduler(GL_CANVAS);
     private final Module module = new Module();
-    private final ModuleRenderer mdlRenderer = new ModuleRenderer(fpsAnim, module, intrface, this.currentResolution, this.currentSectionName) {
+    private final ModuleRenderer mdlRenderer = new ModuleRenderer(renderScheduler, module, intrface, this.currentResolution, this.currentSectionName) {
         @Override
         public void afterSelection() {
             putSelectedOnLabel();
@@ -129,6 +129,11 @@ public class GUI extends javax.swing.JFrame {
             initDisplayActionLog();
         }
 
+        @Override
+        public void afterModuleUpdate() {
+            updateComponentsPreview();
+        }
+
         @Override
         public void editFeature(FeatureKey fk, FeatureValue fv, Inheritance inh, Intrface intr) {
             if (inh == Inheritance.BASE) {
@@ -148,7 +153,7 @@ public class GUI extends javax.swing.JFrame {
 
     };
 
-    private final WindowRenderer winRenderer = new WindowRenderer(fpsAnim, module, intrface, this.currentResolution, this.currentSectionName) {
+    private final WindowRenderer winRenderer = new WindowRenderer(renderScheduler, module, intrface, this.currentResolution, this.currentSectionName) {
         @Override
         public void afterSelection() {
             putSelectedOnLabel();
@@ -173,12 +178,14 @@ public class GUI extends javax.swing.JFrame {
 
     public static final String IMG_VERTEX_SHADER = "imageVS.glsl";
     public static final String IMG_FRAGMENT_SHADER = "imageFS.glsl";
+    public static final String IMG_PAL_FRAGMENT_SHADER = "imagePalFS.glsl";
 
     public static final String FNT_VERTEX_SHADER = "fontVS.glsl";
     public static final String FNT_FRAGMENT_SHADER = "fontFS.glsl";
 
     public static final String OUTLINE_VERTEX_SHADER = "contourVS.glsl";
     public static final String OUTLINE_FRAGMENT_SHADER = "contourFS.glsl";
+    public static final String OUTLINE_PAL_FRAGMENT_SHADER = "contourPalFS.glsl";
 
     public static final String FNT_PIC = "font.png";
     public static final String QMARK_PIC = "qmark.png";
@@ -313,8 +320,22 @@ public class GUI extends javax.swing.JFrame {
         GL_WINDOW.setFullscreen(true);
         GL_WINDOW.setVisible(false);
 
-        fpsAnim.add(GL_WINDOW);
+        renderScheduler.add(GL_WINDOW);
         this.panelModule.add(GL_CANVAS);
+
+        // game time (animations) stands still while minimized
+        this.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(WindowEvent e) {
+                GameTime.getInstance().pause();
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                GameTime.getInstance().resume();
+                mdlRenderer.requestRender();
+            }
+        });
     }
 
     private void initIntEn() {
@@ -919,7 +940,7 @@ public class GUI extends javax.swing.JFrame {
     }//GEN-LAST:event_btnChoosePathOutActionPerformed
 
     private void btnLoadActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnLoadActionPerformed
-        mdlRenderer.getModule().components.clear();
+        mdlRenderer.getModule().clear();
         loadFromButton();
         initBaseFeaturePreview();
         initComponentsPreview();
@@ -1184,10 +1205,21 @@ public class GUI extends javax.swing.JFrame {
     public void buildModuleComponents() {
         if (mode == Mode.ALL_RES) {
             mdlRenderer.buildMode = ModuleRenderer.BuildMode.ALL_RES;
-            mdlRenderer.state = ModuleRenderer.State.BUILD;
+            mdlRenderer.setState(ModuleRenderer.State.BUILD);
         } else if (mode == Mode.TARGET_RES) {
             mdlRenderer.buildMode = ModuleRenderer.BuildMode.TARGET_RES;
-            mdlRenderer.state = ModuleRenderer.State.BUILD;
+            mdlRenderer.setState(ModuleRenderer.State.BUILD);
+        }
+    }
+
+    // updates Animator Renderer GL components after single feature edit
+    // (patched in place, built again if they cannot be)
+    public void updateModuleComponents(FeatureKey featureKey, FeatureValue featureValue, String oldValue) {
+        if ((mode == Mode.ALL_RES && mdlRenderer.buildMode == ModuleRenderer.BuildMode.ALL_RES)
+                || (mode == Mode.TARGET_RES && mdlRenderer.buildMode == ModuleRenderer.BuildMode.TARGET_RES)) {
+            mdlRenderer.update(featureKey, featureValue, oldValue);
+        } else {
+            buildModuleComponents();
         }
     }
 
@@ -1598,6 +1630,7 @@ public class GUI extends javax.swing.JFrame {
         }
         GL_WINDOW.setFullscreen(true);
         GL_WINDOW.setVisible(true);
+        renderScheduler.requestRender();
     }//GEN-LAST:event_btnMdlePreviewActionPerformed
 
     private void btnCheckActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnCheckActionPerformed
@@ -1645,7 +1678,7 @@ public class GUI extends javax.swing.JFrame {
             initBaseFeaturePreview();
             initDerivedFeaturePreview();
             initComponentsPreview();
-            mdlRenderer.getModule().components.clear();
+            mdlRenderer.getModule().clear();
             workOnBuildComponents(); // important!
         }
 
@@ -1716,7 +1749,7 @@ public class GUI extends javax.swing.JFrame {
         currentResolution = new Resolution(Integer.parseInt(things[0]), Integer.parseInt(things[1]));
         if (currentResolution != cmbBoxSection.getSelectedItem()) {
             mdlRenderer.deselect();
-            mdlRenderer.module.components.clear();
+            mdlRenderer.module.clear();
             initBaseFeaturePreview();
             initDerivedFeaturePreview();
             initComponentsPreview();
@@ -1739,7 +1772,7 @@ public class GUI extends javax.swing.JFrame {
 
     private void toolsScreenshotActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_toolsScreenshotActionPerformed
         // TODO add your handling code here:
-        mdlRenderer.state = ModuleRenderer.State.SCREENSHOT;
+        mdlRenderer.setState(ModuleRenderer.State.SCREENSHOT);
     }//GEN-LAST:event_toolsScreenshotActionPerformed
 
     private void btnDeselectActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnDeselectActionPerformed
@@ -1784,7 +1817,7 @@ public class GUI extends javax.swing.JFrame {
         currentResolution = new Resolution(Integer.parseInt(things[0]), Integer.parseInt(things[1]));
         if (currentResolution != cmbBoxSection.getSelectedItem()) {
             mdlRenderer.deselect();
-            mdlRenderer.module.components.clear();
+            mdlRenderer.module.clear();
             initBaseFeaturePreview();
             initDerivedFeaturePreview();
             initComponentsPreview();
@@ -1895,6 +1928,7 @@ public class GUI extends javax.swing.JFrame {
                     txt.getOverlay().setEnabled(!en);
                 }
                 tblComps.setValueAt(glc.isEnabled(), srow, scol);
+                mdlRenderer.requestRender();
                 break;
             }
         }
@@ -2264,8 +2298,8 @@ public class GUI extends javax.swing.JFrame {
         Thread splashUpdater = new Thread(splashScreen, "Splash Screen Updater");
         splashUpdater.start();
 
-        // Load Palette for FRMs
-        Palette.load("Fallout Palette.act");
+        // Load Palette for FRMs (it's cached and shared from now on)
+        Palette.getDefault();
 
         // to measure elapsed time in interval [0, 120) cycled
         GameTime gameTime = GameTime.getInstance();
@@ -19,42 +19,60 @@ package rs.alexanderstojanovich.fo2ie.main;
 import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 
 /**
+ * Game time, cycles through [0, TPS) ticks once per second. Ticks are derived
+ * from the system nano time when asked for (no thread is ticking), so the
+ * clock costs nothing while idle. Clock can be paused (minimized window).
  *
  * @author Alexander Stojanovich <coas91@rocketmail.com>
  */
-public class GameTime extends Thread {
-
-    private boolean finished = false;
+public class GameTime {
 
     public static final int TPS = Configuration.getInstance().getAnimationTicks();
-    private double gameTicks = 0.0;
 
-    private static GameTime instance;
+    private static final long CYCLE = 1000000000L; // TPS ticks, in nanoseconds
 
-    public static GameTime getInstance() {
-        if (instance == null) {
-            instance = new GameTime();
-        }
-        return instance;
-    }
+    private static final GameTime INSTANCE = new GameTime();
 
-    @Override
-    public void run() {
-        long lastTime = System.nanoTime();
+    // clock start (nano time), moved forward by the time spent paused
+    private long origin = System.nanoTime();
+    // nano time clock has been paused at (clock is paused until started)
+    private long pausedAt = origin;
+    private boolean paused = true;
 
-        while (!finished) {
-            long currTime = System.nanoTime();
-            long deltaTime = currTime - lastTime;
-            lastTime = currTime;
+    private GameTime() {
 
-            gameTicks += TPS * (deltaTime / 1E9D);
+    }
 
-            if (gameTicks >= TPS) {
-                gameTicks = 0.0;
-            }
+    public static GameTime getInstance() {
+        return INSTANCE;
+    }
 
+    /**
+     * Starts the clock from zero
+     */
+    public synchronized void start() {
+        origin = System.nanoTime();
+        paused = false;
+    }
+
+    /**
+     * Pauses the clock (ticks stay the same until resumed)
+     */
+    public synchronized void pause() {
+        if (!paused) {
+            pausedAt = System.nanoTime();
+            paused = true;
         }
+    }
 
+    /**
+     * Resumes the clock from where it has been paused
+     */
+    public synchronized void resume() {
+        if (paused) {
+            origin += System.nanoTime() - pausedAt;
+            paused = false;
+        }
     }
 
     /**
@@ -62,16 +80,13 @@ public class GameTime extends Thread {
      *
      * @return game ticks
      */
-    public double getGameTicks() {
-        return gameTicks;
-    }
-
-    public boolean isFinished() {
-        return finished;
+    public synchronized double getGameTicks() {
+        final long elapsed = (paused ? pausedAt : System.nanoTime()) - origin;
+        return Math.floorMod(elapsed, CYCLE) * TPS / (double) CYCLE;
     }
 
-    public void setFinished(boolean finished) {
-        this.finished = finished;
+    public synchronized boolean isPaused() {
+        return paused;
     }
 
 }
@@ -17,14 +17,22 @@
 package rs.alexanderstojanovich.fo2ie.main;
 
 import com.jogamp.opengl.GL2;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.joml.Matrix4f;
+import rs.alexanderstojanovich.fo2ie.feature.FeatureKey;
+import rs.alexanderstojanovich.fo2ie.ogl.AddressableQuad;
+import rs.alexanderstojanovich.fo2ie.ogl.Animation;
 import rs.alexanderstojanovich.fo2ie.ogl.GLComponent;
 import rs.alexanderstojanovich.fo2ie.ogl.ShaderProgram;
+import rs.alexanderstojanovich.fo2ie.ogl.SpriteBatch;
 import rs.alexanderstojanovich.fo2ie.ogl.Text;
+import rs.alexanderstojanovich.fo2ie.ogl.Texture;
+import rs.alexanderstojanovich.fo2ie.ogl.TextureCache;
+import rs.alexanderstojanovich.fo2ie.ogl.TextureUploader;
+import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
+import rs.alexanderstojanovich.fo2ie.util.Pair;
 
 /**
  *
@@ -36,22 +44,20 @@ public class Module {
 
     protected final List<GLComponent> components = new CopyOnWriteArrayList<>();
 
-    protected final TimerTask unbufTask = new TimerTask() {
-        @Override
-        public void run() {
-            synchronized (OBJ_MUTEX) {
-                for (GLComponent component : components) {
-                    component.unbuffer(); // hint that component should be refreshed again
-                }
-            }
-        }
-    };
+    // textures owned by this module (retained once per add)
+    protected final List<Texture> textures = new ArrayList<>();
+    // textures of the cleared components, released on the next call with GL context
+    protected final List<Texture> clearedTextures = new ArrayList<>();
+    // cleared components, their buffers are released with the textures
+    protected final List<GLComponent> clearedComponents = new ArrayList<>();
+
+    // pictures, animations and addressable quads are rendered in batches
+    protected final SpriteBatch spriteBatch = new SpriteBatch();
+    protected final List<GLComponent> sprites = new ArrayList<>();
 
     public Module() {
-        timer.schedule(unbufTask, 250L, 250L);
-    }
 
-    protected final Timer timer = new Timer("Module Timer Util");
+    }
 
     /**
      * Renders this module to the OpenGL canvas
@@ -60,49 +66,190 @@ public class Module {
      * @param projMat4 projection matrix
      * @param prmSP primitive shader program
      * @param imgSP image shader program
+     * @param palSP image shader program for palette-indexed textures
      * @param fntSP font shader program
      */
-    public void render(GL2 gl20, Matrix4f projMat4, ShaderProgram prmSP, ShaderProgram imgSP, ShaderProgram fntSP) {
+    public void render(GL2 gl20, Matrix4f projMat4, ShaderProgram prmSP, ShaderProgram imgSP, ShaderProgram palSP, ShaderProgram fntSP) {
         synchronized (OBJ_MUTEX) {
+            releaseTextures(gl20);
+            sprites.clear();
             for (GLComponent component : components) {
-                if (!component.isBuffered()) {
-                    component.buffer(gl20);
-                }
-
                 switch (component.getType()) {
                     case PIC:
                     case ANIM:
                     case ADDR:
-                        component.render(gl20, projMat4, imgSP);
+                        // drawn with the following sprites (at once)
+                        sprites.add(component);
                         break;
                     case TXT:
+                        // keep the order, sprites before this text are drawn first
+                        if (!sprites.isEmpty()) {
+                            spriteBatch.render(gl20, projMat4, sprites, imgSP, palSP);
+                            sprites.clear();
+                        }
+                        if (!component.isBuffered()) {
+                            component.buffer(gl20);
+                        }
                         Text text = (Text) component;
                         text.render(gl20, projMat4, fntSP, prmSP);
                         break;
                 }
 
             }
+            if (!sprites.isEmpty()) {
+                spriteBatch.render(gl20, projMat4, sprites, imgSP, palSP);
+                sprites.clear();
+            }
         }
 
     }
 
-    public List<GLComponent> getComponents() {
-        return components;
+    /**
+     * Adds texture to this module (module becomes one of its owners)
+     *
+     * @param texture texture built for this module
+     * @return the same texture
+     */
+    public Texture addTexture(Texture texture) {
+        synchronized (OBJ_MUTEX) {
+            textures.add(texture.retain());
+        }
+        return texture;
     }
 
     /**
-     * Stops timer util
+     * Replaces texture of this module (module stops being owner of the old
+     * one, it is released on the next call with GL context)
+     *
+     * @param oldTexture texture being replaced (may be null)
+     * @param newTexture texture built for this module
+     * @return the new texture
      */
-    public void stopTimer() {
-        timer.cancel();
+    public Texture replaceTexture(Texture oldTexture, Texture newTexture) {
+        synchronized (OBJ_MUTEX) {
+            // textures are compared by identity, equal ones may be different objects
+            for (int i = 0; oldTexture != null && i < textures.size(); i++) {
+                if (textures.get(i) == oldTexture) {
+                    clearedTextures.add(textures.remove(i));
+                    break;
+                }
+            }
+            textures.add(newTexture.retain());
+        }
+        return newTexture;
     }
 
-    public TimerTask getUnbufTask() {
-        return unbufTask;
+    /**
+     * Clears all the components of this module. Owned textures and buffers of
+     * the components are released on the next call with GL context (render or
+     * rebuild), so this can be called from any thread. Pending uploads of the
+     * atlas regions are cancelled.
+     */
+    public void clear() {
+        synchronized (OBJ_MUTEX) {
+            TextureUploader.getInstance().cancel();
+            clearedComponents.addAll(components);
+            components.clear();
+            clearedTextures.addAll(textures);
+            textures.clear();
+        }
     }
 
-    public Timer getTimer() {
-        return timer;
+    /**
+     * Releases textures of the cleared components (deletes those with no
+     * other owners) and their buffers and trims texture cache to its budget.
+     * Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     */
+    public void releaseTextures(GL2 gl20) {
+        synchronized (OBJ_MUTEX) {
+            if (!clearedComponents.isEmpty()) {
+                for (GLComponent component : clearedComponents) {
+                    component.release(gl20);
+                }
+                clearedComponents.clear();
+            }
+            if (!clearedTextures.isEmpty()) {
+                for (Texture texture : clearedTextures) {
+                    texture.release(gl20);
+                }
+                clearedTextures.clear();
+                TextureCache.getInstance().trim(gl20);
+                FO2IELogger.reportInfo(Texture.getDiagnostics(), null);
+            }
+        }
+    }
+
+    /**
+     * Gets frame rate needed by the visible (enabled) animated components.
+     * Animation goes through all its frames and addressable quad through all
+     * its steps in one second (one GameTime cycle).
+     *
+     * @return frames per second or 0 if nothing is animated
+     */
+    public int getAnimationFps() {
+        int fps = 0;
+        for (GLComponent component : components) {
+            if (component.isEnabled()) {
+                if (component instanceof Animation) {
+                    final int frames = ((Animation) component).getTexture().length;
+                    if (frames > 1) {
+                        fps = Math.max(fps, frames);
+                    }
+                } else if (component instanceof AddressableQuad) {
+                    fps = Math.max(fps, ((AddressableQuad) component).getStepCount());
+                }
+            }
+        }
+        return fps;
+    }
+
+    /**
+     * Gets components which depend on the feature, those positioned by it,
+     * showing it (picture) or stepped by it (split value of the position).
+     *
+     * @param featureKey feature key
+     * @return dependent components (in order of rendering)
+     */
+    public List<GLComponent> getDependents(FeatureKey featureKey) {
+        final List<GLComponent> result = new ArrayList<>();
+        for (GLComponent component : components) {
+            final FeatureKey posKey = component.getPosFeatureKey();
+            if (posKey == featureKey || component.getLinkFeatureKey() == featureKey) {
+                result.add(component);
+            } else if (posKey != null) {
+                Pair<FeatureKey, FeatureKey> splitValues = FeatureKey.getSplitValues(posKey);
+                if (splitValues != null && (splitValues.getKey() == featureKey || splitValues.getValue() == featureKey)) {
+                    result.add(component);
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<Texture> getTextures() {
+        return textures;
+    }
+
+    public SpriteBatch getSpriteBatch() {
+        return spriteBatch;
+    }
+
+    public List<GLComponent> getComponents() {
+        return components;
+    }
+
+    /**
+     * Marks all the components for re-buffering (components track their own
+     * changes, this is for changes outside of them, like canvas resize).
+     */
+    public void unbuffer() {
+        synchronized (OBJ_MUTEX) {
+            for (GLComponent component : components) {
+                component.unbuffer();
+            }
+        }
     }
 
 }
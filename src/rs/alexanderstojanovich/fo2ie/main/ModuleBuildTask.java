@@ -17,19 +17,26 @@
 package rs.alexanderstojanovich.fo2ie.main;
 
 import com.jogamp.opengl.GL2;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.SwingWorker;
 import org.joml.Vector2f;
+import rs.alexanderstojanovich.fo2ie.feature.DecodedImageCache;
 import rs.alexanderstojanovich.fo2ie.feature.FeatureKey;
 import rs.alexanderstojanovich.fo2ie.feature.FeatureValue;
 import rs.alexanderstojanovich.fo2ie.feature.ImageWrapper;
 import rs.alexanderstojanovich.fo2ie.feature.MyRectangle;
 import rs.alexanderstojanovich.fo2ie.feature.SingleValue;
+import rs.alexanderstojanovich.fo2ie.frm.ImageData;
 import rs.alexanderstojanovich.fo2ie.intrface.Intrface;
 import rs.alexanderstojanovich.fo2ie.intrface.Resolution;
 import rs.alexanderstojanovich.fo2ie.intrface.ResolutionPragma;
@@ -43,6 +50,8 @@ import rs.alexanderstojanovich.fo2ie.ogl.PrimitiveQuad;
 import rs.alexanderstojanovich.fo2ie.ogl.Quad;
 import rs.alexanderstojanovich.fo2ie.ogl.Text;
 import rs.alexanderstojanovich.fo2ie.ogl.Texture;
+import rs.alexanderstojanovich.fo2ie.ogl.TextureAtlas;
+import rs.alexanderstojanovich.fo2ie.ogl.TextureCache;
 import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
 import rs.alexanderstojanovich.fo2ie.util.MathUtils;
 import rs.alexanderstojanovich.fo2ie.util.Pair;
@@ -62,7 +71,16 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
     protected final SectionName sectionName;
     protected final ModuleRenderer.BuildMode buildMode;
 
+    // images of the section are decoded in parallel before the components are built
+    protected static final ExecutorService DECODER = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "Image Decoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     protected Resolution buildResolution = Resolution.DEFAULT;
+    // atlas images of the section are packed into (new one per build)
+    protected TextureAtlas atlas;
     protected static Quad canvas;
     protected static Quad root;
     protected static int modeWidth = 800;
@@ -92,6 +110,134 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
         this.unusedTexture = unusedTexture;
     }
 
+    /**
+     * Loads texture for the image (frame) of the image wrapper. FRM frames are
+     * uploaded palette-indexed, other images as true color, both packed into
+     * the section atlas. Texture is owned by the module being built (and the
+     * texture cache, so unchanged images are not uploaded again on the next
+     * build).
+     *
+     * @param iw image wrapper (with loaded images)
+     * @param index image (frame) index
+     * @return loaded texture
+     */
+    protected Texture loadTexture(ImageWrapper iw, int index) {
+        if (iw.isIndexed()) {
+            return module.addTexture(Texture.loadTexture(iw.getFile(), gl20, iw.getFrame(index), iw.getPalette(), atlas));
+        } else {
+            return module.addTexture(Texture.loadTexture(iw.getFile(), gl20, iw.getImage(index), atlas));
+        }
+    }
+
+    /**
+     * Loads textures for all the frames of the image wrapper (animation). Frames
+     * are packed as one strip into the section atlas, so they are regions of
+     * the same page. Textures are owned by the module being built.
+     *
+     * @param iw image wrapper (with loaded images)
+     * @return loaded textures (one per frame)
+     */
+    protected Texture[] loadAnimation(ImageWrapper iw) {
+        final int imageCount = iw.getImageCount();
+        final Texture[] textures;
+        if (iw.isIndexed()) {
+            final ImageData[] frames = new ImageData[imageCount];
+            for (int index = 0; index < imageCount; index++) {
+                frames[index] = iw.getFrame(index);
+            }
+            textures = Texture.loadAnimation(iw.getFile(), gl20, frames, iw.getPalette(), atlas);
+        } else {
+            textures = Texture.loadAnimation(iw.getFile(), gl20, iw.getImages(), atlas);
+        }
+        for (Texture texture : textures) {
+            module.addTexture(texture);
+        }
+        return textures;
+    }
+
+    /**
+     * Gets scale of the text so it fits into its overlay (text area)
+     *
+     * @param fntWidth font char width in pixels
+     * @param fntHeight font char height in pixels
+     * @param width overlay width in pixels
+     * @param height overlay height in pixels
+     * @return text scale
+     */
+    protected static float getTextScale(int fntWidth, int fntHeight, int width, int height) {
+        return 0.67f * MathUtils.lerp(fntWidth, width, 0.75f) / (float) (fntWidth + width) + 0.33f * MathUtils.lerp(fntHeight, height, 0.75f) / (float) (fntHeight + height);
+    }
+
+    /**
+     * Collects images the section is built from (main picture and pictures of
+     * the picture positions), each image (wrapper) once.
+     *
+     * @param section interface section
+     * @param featMap feature map module is built from
+     * @return images of the section, whether all of its frames are used
+     * (animation) or only the first one (picture, split picture)
+     */
+    protected static Map<ImageWrapper, Boolean> collectImages(Section section, Map<FeatureKey, FeatureValue> featMap) {
+        final Map<ImageWrapper, Boolean> images = new IdentityHashMap<>();
+        FeatureKey mainPicKey = section.getRoot().getMainPic();
+        if (mainPicKey != null && featMap.get(mainPicKey) instanceof ImageWrapper) {
+            images.put((ImageWrapper) featMap.get(mainPicKey), false);
+        }
+        FeatureKey[] picPosValues = section.getRoot().getPicPosValues();
+        if (picPosValues != null) {
+            for (FeatureKey picPosKey : picPosValues) {
+                if (picPosKey != section.getRoot().getMainPicPos() && featMap.get(picPosKey) instanceof MyRectangle) {
+                    final boolean allFrames = FeatureKey.getSplitValues(picPosKey) == null;
+                    for (FeatureKey picKey : picPosKey.getPics()) {
+                        FeatureValue picVal = featMap.get(picKey);
+                        if (picVal instanceof ImageWrapper) {
+                            images.merge((ImageWrapper) picVal, allFrames, Boolean::logicalOr);
+                        }
+                    }
+                }
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Loads and decodes images in parallel, one task per image. Components
+     * are built from the decoded images afterwards (in order, with GL
+     * context), frames which were not decoded here are decoded on first
+     * access.
+     *
+     * @param images images to load, whether to decode all of their frames
+     * @throws IOException if loading any image fails
+     */
+    protected static void decodeImages(Map<ImageWrapper, Boolean> images) throws IOException {
+        final List<Callable<Object>> tasks = new ArrayList<>(images.size());
+        for (Map.Entry<ImageWrapper, Boolean> entry : images.entrySet()) {
+            final ImageWrapper iw = entry.getKey();
+            final boolean allFrames = entry.getValue();
+            tasks.add(() -> {
+                iw.loadImages();
+                // PNG is decoded on load, FRM frames here (frame source keeps a bounded number)
+                if (allFrames) {
+                    return iw.getImages();
+                }
+                return (iw.getImageCount() > 0) ? iw.getImage(0) : null;
+            });
+        }
+        try {
+            for (Future<Object> result : DECODER.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Decoding images interrupted!", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
     /**
      * Builds components list from common section based on all resolutions
      *
@@ -101,7 +247,10 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
     public void buildAllRes() throws IOException {
         float oldProgress = 0.0f, progress = 0.0f;
 
-        module.components.clear();
+        // previous build (its textures) is dropped
+        module.clear();
+        module.releaseTextures(gl20);
+        atlas = new TextureAtlas(sectionName.name(), Texture.TEX_SIZE);
 
         modeWidth = 800;
         modeHeight = 600;
@@ -124,6 +273,8 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
         // final result is array list of components
         final Section section = intrface.getNameToSectionMap().get(sectionName);
         if (section != null) {
+            // images are decoded first (in parallel), loaded ones are used below
+            decodeImages(collectImages(section, intrface.getModifiedBinds().commonFeatMap));
             FeatureKey mainPicKey = section.getRoot().getMainPic();
             MyRectangle mainPicPosVal = null;
 
@@ -132,17 +283,16 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
             // if main picture exists (and in most cases it does apart from LMenu (known as pop-up menu)
             if (mainPicKey != null && intrface.getModifiedBinds().commonFeatMap.containsKey(mainPicKey)) {
                 ImageWrapper mainPicVal = (ImageWrapper) intrface.getModifiedBinds().commonFeatMap.get(mainPicKey);
-                mainPicVal.loadImages();
-                int mainPicWidth = Math.round(mainPicVal.getImages()[0].getWidth() * modeScaleXYFactor.getKey());
-                int mainPicHeight = Math.round(mainPicVal.getImages()[0].getHeight() * modeScaleXYFactor.getValue());
+                int mainPicWidth = Math.round(mainPicVal.getImage(0).getWidth() * modeScaleXYFactor.getKey());
+                int mainPicHeight = Math.round(mainPicVal.getImage(0).getHeight() * modeScaleXYFactor.getValue());
                 xOffset -= mainPicWidth / 2.0f;
                 yOffset -= mainPicHeight / 2.0f;
 
                 // texture for main picture
                 Texture rootTex;
                 // if main picture holds the image load the texture
-                if (mainPicVal.getImages() != null && mainPicVal.getImages().length == 1) {
-                    rootTex = Texture.loadTexture(mainPicVal.getStringValue(), gl20, mainPicVal.getImages()[0]);
+                if (mainPicVal.getImageCount() == 1) {
+                    rootTex = loadTexture(mainPicVal, 0);
                     // otherwise load missing question mark texture
                 } else {
                     rootTex = Texture.loadLocalTexture(gl20, GUI.QMARK_PIC);
@@ -208,17 +358,17 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                 FeatureValue picVal = intrface.getModifiedBinds().commonFeatMap.get(picKey);
                                 if (picVal instanceof ImageWrapper) {
                                     ImageWrapper iw = (ImageWrapper) picVal;
-                                    iw.loadImages();
-                                    BufferedImage[] images = iw.getImages();
-                                    if (images != null && images.length > 0) {
+                                    // images are already loaded (decoded in parallel)
+                                    final int imageCount = iw.getImageCount();
+                                    if (imageCount > 0) {
                                         // dimension of picture/animation in pixels
                                         int width, height;
                                         // pixel (screen) coordinates
                                         Vector2f pos = new Vector2f();
-                                        if (images.length == 1 && splitW == 0.0f && splitH == 0.0f) {
+                                        if (imageCount == 1 && splitW == 0.0f && splitH == 0.0f) {
                                             // pixel dimension
-                                            width = Math.round(modeScaleXYFactor.getKey() * images[0].getWidth());
-                                            height = Math.round(modeScaleXYFactor.getValue() * images[0].getHeight());
+                                            width = Math.round(modeScaleXYFactor.getKey() * iw.getImage(0).getWidth());
+                                            height = Math.round(modeScaleXYFactor.getValue() * iw.getImage(0).getHeight());
 
                                             if (width > 0 && height > 0) {
                                                 // pixel position
@@ -230,14 +380,14 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                                 pos.y += yOffset;
 
                                                 // texture from loaded image
-                                                Texture tex = Texture.loadTexture(iw.getStringValue(), gl20, images[0]);
+                                                Texture tex = loadTexture(iw, 0);
                                                 Quad imgComp = new Quad(picPosKey, picKey, GLComponent.Inheritance.BASE, width, height, tex, pos);
                                                 picComps.add(imgComp);
                                             }
                                         } else if (splitW != 0.0f || splitH != 0.0f) {
                                             // pixel dimension
-                                            width = Math.round(modeScaleXYFactor.getKey() * images[0].getWidth());
-                                            height = Math.round(modeScaleXYFactor.getValue() * images[0].getHeight());
+                                            width = Math.round(modeScaleXYFactor.getKey() * iw.getImage(0).getWidth());
+                                            height = Math.round(modeScaleXYFactor.getValue() * iw.getImage(0).getHeight());
                                             // pixel position (picPosRect is already scaled)
 
                                             pos.x = picPosRect.minX + width / 2.0f;
@@ -248,7 +398,7 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                             );
 
                                             // texture from loaded image
-                                            Texture aqtex = Texture.loadTexture(iw.getStringValue(), gl20, images[0]);
+                                            Texture aqtex = loadTexture(iw, 0);
                                             AddressableQuad aq = new AddressableQuad(picPosKey, picKey, GLComponent.Inheritance.BASE, width, height, aqtex, pos, splitW, splitH, posMax);
                                             picComps.add(aq);
                                         } else {
@@ -264,13 +414,8 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                                 pos.x += xOffset;
                                                 pos.y += yOffset;
 
-                                                int index = 0;
-                                                // array of textures for an animation
-                                                final Texture[] texas = new Texture[images.length];
-                                                for (BufferedImage image : images) {
-                                                    texas[index] = Texture.loadTexture(iw.getStringValue() + index, gl20, image);
-                                                    index++;
-                                                }
+                                                // array of textures for an animation (one strip)
+                                                final Texture[] texas = loadAnimation(iw);
                                                 Animation anim = new Animation(picPosKey, picKey, GLComponent.Inheritance.BASE, iw.getFps(), width, height, texas, pos);
                                                 picComps.add(anim);
                                             }
@@ -384,7 +529,7 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                             txt.getOverlay().setColor(intrface.getTextOverlayColor());
                             txt.getOverlay().setWidth(width);
                             txt.getOverlay().setHeight(height);
-                            txt.setScale(0.67f * MathUtils.lerp(fntWidth, width, 0.75f) / (float) (fntWidth + width) + 0.33f * MathUtils.lerp(fntHeight, height, 0.75f) / (float) (fntHeight + height));
+                            txt.setScale(getTextScale(fntWidth, fntHeight, width, height));
                             txtComps.add(txt);
                         }
                     } else if (txtVal != null) {
@@ -421,7 +566,10 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
     public void buildTargetRes(Resolution resolution) throws IOException {
         float oldProgress = 0.0f, progress = 0.0f;
 
-        module.components.clear();
+        // previous build (its textures) is dropped
+        module.clear();
+        module.releaseTextures(gl20);
+        atlas = new TextureAtlas(sectionName.name(), Texture.TEX_SIZE);
 
         final Map<FeatureKey, FeatureValue> resFeatMap = new HashMap<>(intrface.getModifiedBinds().commonFeatMap);
 
@@ -459,6 +607,8 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
         // final result is array list of components
         final Section section = intrface.getNameToSectionMap().get(sectionName);
         if (section != null) {
+            // images are decoded first (in parallel), loaded ones are used below
+            decodeImages(collectImages(section, resFeatMap));
             FeatureKey mainPicKey = section.getRoot().getMainPic();
             MyRectangle mainPicPosVal = null;
 
@@ -467,17 +617,16 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
             // if main picture exists (and in most cases it does apart from LMenu (known as pop-up menu)
             if (mainPicKey != null && resFeatMap.containsKey(mainPicKey)) {
                 ImageWrapper mainPicVal = (ImageWrapper) resFeatMap.get(mainPicKey);
-                mainPicVal.loadImages();
-                int mainPicWidth = Math.round(mainPicVal.getImages()[0].getWidth() * modeScaleXYFactor.getKey());
-                int mainPicHeight = Math.round(mainPicVal.getImages()[0].getHeight() * modeScaleXYFactor.getValue());
+                int mainPicWidth = Math.round(mainPicVal.getImage(0).getWidth() * modeScaleXYFactor.getKey());
+                int mainPicHeight = Math.round(mainPicVal.getImage(0).getHeight() * modeScaleXYFactor.getValue());
                 xOffset -= mainPicWidth / 2.0f;
                 yOffset -= mainPicHeight / 2.0f;
 
                 // texture for main picture
                 Texture rootTex;
                 // if main picture holds the image load the texture
-                if (mainPicVal.getImages() != null && mainPicVal.getImages().length == 1) {
-                    rootTex = Texture.loadTexture(mainPicVal.getStringValue(), gl20, mainPicVal.getImages()[0]);
+                if (mainPicVal.getImageCount() == 1) {
+                    rootTex = loadTexture(mainPicVal, 0);
                     // otherwise load missing question mark texture
                 } else {
                     rootTex = Texture.loadLocalTexture(gl20, GUI.QMARK_PIC);
@@ -550,17 +699,17 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                 FeatureValue picVal = resFeatMap.get(picKey);
                                 if (picVal instanceof ImageWrapper) {
                                     ImageWrapper iw = (ImageWrapper) picVal;
-                                    iw.loadImages();
-                                    BufferedImage[] images = iw.getImages();
-                                    if (images != null && images.length > 0) {
+                                    // images are already loaded (decoded in parallel)
+                                    final int imageCount = iw.getImageCount();
+                                    if (imageCount > 0) {
                                         // dimension of picture/animation in pixels
                                         int width, height;
                                         // pixel (screen) coordinates
                                         Vector2f pos = new Vector2f();
-                                        if (images.length == 1 && splitW == 0.0f && splitH == 0.0f) {
+                                        if (imageCount == 1 && splitW == 0.0f && splitH == 0.0f) {
                                             // pixel dimension
-                                            width = Math.round(modeScaleXYFactor.getKey() * images[0].getWidth());
-                                            height = Math.round(modeScaleXYFactor.getValue() * images[0].getHeight());
+                                            width = Math.round(modeScaleXYFactor.getKey() * iw.getImage(0).getWidth());
+                                            height = Math.round(modeScaleXYFactor.getValue() * iw.getImage(0).getHeight());
 
                                             if (width > 0 && height > 0) {
                                                 // pixel position
@@ -572,7 +721,7 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                                 pos.y += yOffset;
 
                                                 // texture from loaded image
-                                                Texture tex = Texture.loadTexture(iw.getStringValue(), gl20, images[0]);
+                                                Texture tex = loadTexture(iw, 0);
                                                 GLComponent.Inheritance inheritance = null;
                                                 if (resolutionPragma != null && resolutionPragma.getCustomFeatMap().containsKey(picPosKey)) {
                                                     inheritance = GLComponent.Inheritance.DERIVED;
@@ -584,8 +733,8 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                             }
                                         } else if (splitW != 0.0f || splitH != 0.0f) {
                                             // pixel dimension
-                                            width = Math.round(modeScaleXYFactor.getKey() * images[0].getWidth());
-                                            height = Math.round(modeScaleXYFactor.getValue() * images[0].getHeight());
+                                            width = Math.round(modeScaleXYFactor.getKey() * iw.getImage(0).getWidth());
+                                            height = Math.round(modeScaleXYFactor.getValue() * iw.getImage(0).getHeight());
                                             // pixel position (picPosRect is already scaled)
                                             if (width > 0 && height > 0) {
                                                 pos.x = picPosRect.minX + width / 2.0f;
@@ -596,7 +745,7 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                                 );
 
                                                 // texture from loaded image
-                                                Texture aqtex = Texture.loadTexture(iw.getStringValue(), gl20, images[0]);
+                                                Texture aqtex = loadTexture(iw, 0);
                                                 GLComponent.Inheritance inheritance = null;
                                                 if (resolutionPragma != null && resolutionPragma.getCustomFeatMap().containsKey(picPosKey)) {
                                                     inheritance = GLComponent.Inheritance.DERIVED;
@@ -620,13 +769,8 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                                                 pos.x += xOffset;
                                                 pos.y += yOffset;
 
-                                                int index = 0;
-                                                // array of textures for an animation
-                                                final Texture[] texas = new Texture[images.length];
-                                                for (BufferedImage image : images) {
-                                                    texas[index] = Texture.loadTexture(iw.getStringValue() + index, gl20, image);
-                                                    index++;
-                                                }
+                                                // array of textures for an animation (one strip)
+                                                final Texture[] texas = loadAnimation(iw);
                                                 GLComponent.Inheritance inheritance = null;
                                                 if (resolutionPragma != null && resolutionPragma.getCustomFeatMap().containsKey(picPosKey)) {
                                                     inheritance = GLComponent.Inheritance.DERIVED;
@@ -764,7 +908,7 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                             txt.getOverlay().setColor(intrface.getTextOverlayColor());
                             txt.getOverlay().setWidth(width);
                             txt.getOverlay().setHeight(height);
-                            txt.setScale(0.67f * MathUtils.lerp(fntWidth, width, 0.75f) / (float) (fntWidth + width) + 0.33f * MathUtils.lerp(fntHeight, height, 0.75f) / (float) (fntHeight + height));
+                            txt.setScale(getTextScale(fntWidth, fntHeight, width, height));
                             txtComps.add(txt);
                         }
                     } else if (txtVal != null) {
@@ -810,6 +954,20 @@ public class ModuleBuildTask extends SwingWorker<Object, Object> {
                 gl20.getContext().release();
                 break;
         }
+        if (atlas != null) {
+            FO2IELogger.reportInfo(atlas.getReport(), null);
+        }
+        // one line per allocated texture of the module (atlas page or standalone texture)
+        final Map<Texture, Boolean> reported = new IdentityHashMap<>();
+        for (Texture texture : new ArrayList<>(module.getTextures())) {
+            final Texture allocated = (texture.getPage() != null) ? texture.getPage() : texture;
+            if (reported.put(allocated, Boolean.TRUE) == null) {
+                FO2IELogger.reportInfo(allocated.getMemoryReport(), null);
+            }
+        }
+        FO2IELogger.reportInfo(Texture.getDiagnostics(), null);
+        FO2IELogger.reportInfo(TextureCache.getInstance().getStatistics(), null);
+        FO2IELogger.reportInfo(DecodedImageCache.getInstance().getStatistics(), null);
 
         return null;
     }
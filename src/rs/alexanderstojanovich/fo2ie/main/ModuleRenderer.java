@@ -19,7 +19,6 @@ package rs.alexanderstojanovich.fo2ie.main;
 import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLEventListener;
-import com.jogamp.opengl.util.FPSAnimator;
 import com.jogamp.opengl.util.GLBuffers;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
@@ -33,8 +32,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.imageio.ImageIO;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import rs.alexanderstojanovich.fo2ie.feature.FeatureKey;
@@ -44,12 +46,15 @@ import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 import rs.alexanderstojanovich.fo2ie.intrface.Intrface;
 import rs.alexanderstojanovich.fo2ie.intrface.Resolution;
 import rs.alexanderstojanovich.fo2ie.intrface.Section.SectionName;
+import rs.alexanderstojanovich.fo2ie.ogl.GLCallCounter;
 import rs.alexanderstojanovich.fo2ie.ogl.GLComponent;
 import rs.alexanderstojanovich.fo2ie.ogl.PrimitiveQuad;
 import rs.alexanderstojanovich.fo2ie.ogl.Shader;
 import rs.alexanderstojanovich.fo2ie.ogl.ShaderProgram;
+import rs.alexanderstojanovich.fo2ie.ogl.UploadStats;
 import rs.alexanderstojanovich.fo2ie.ogl.Text;
 import rs.alexanderstojanovich.fo2ie.ogl.Texture;
+import rs.alexanderstojanovich.fo2ie.ogl.TextureUploader;
 import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
 import rs.alexanderstojanovich.fo2ie.util.GLColor;
 import rs.alexanderstojanovich.fo2ie.util.Pair;
@@ -64,6 +69,8 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
     public static final Object OBJ_SYNC = new Object();
 
     private final Configuration config = Configuration.getInstance();
+    private final GameTime gameTime = GameTime.getInstance();
+    private final TextureUploader textureUploader = TextureUploader.getInstance();
 
     public static final int DEF_WIDTH = 800;
     public static final int DEF_HEIGHT = 600;
@@ -72,11 +79,16 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
     protected final Module module;
     protected final Intrface intrface;
 
-    // shader programs {primitive, image and font}
+    // shader programs {primitive, image (true color and palette-indexed) and font}
     private ShaderProgram primSProgram;
     private ShaderProgram imgSProgram;
+    private ShaderProgram palSProgram;
     private ShaderProgram fntSProgram;
     private ShaderProgram cntSProgram;
+    private ShaderProgram cntPalSProgram;
+
+    // last logged upload rate (logged when it changes)
+    private long lastUploadRate = 0L;
 
     // textures
     protected Texture fntTexture;
@@ -84,8 +96,11 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
     // projection matrix
     private final Matrix4f projMat4 = new Matrix4f().identity();
 
-    // animator used for rendering in the loop
-    private final FPSAnimator animator;
+    // renders on demand (input, edits, builds and visible animations)
+    private final RenderScheduler renderScheduler;
+
+    // single feature edits patched into the built module on the next render
+    private final Queue<ModuleUpdate> updates = new ConcurrentLinkedQueue<>();
 
     protected GLComponent selected;
     protected GLComponent outline;
@@ -125,14 +140,14 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
     /**
      * Create JOGL Animator of the built module
      *
-     * @param animator parsed FPS animator
+     * @param renderScheduler render scheduler (renders on demand)
      * @param module GL module with components
      * @param intrface FOnline interface
      * @param guiResolution GUI resolution field
      * @param guiSectionName GUI section name
      */
-    public ModuleRenderer(FPSAnimator animator, Module module, Intrface intrface, Resolution guiResolution, SectionName guiSectionName) {
-        this.animator = animator;
+    public ModuleRenderer(RenderScheduler renderScheduler, Module module, Intrface intrface, Resolution guiResolution, SectionName guiSectionName) {
+        this.renderScheduler = renderScheduler;
         this.module = module;
         this.intrface = intrface;
         this.guiResolution = guiResolution;
@@ -177,6 +192,9 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         Shader imgFS = new Shader(gl20, GUI.IMG_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
         imgSProgram = new ShaderProgram(gl20, imgVS, imgFS);
 
+        Shader palFS = new Shader(gl20, GUI.IMG_PAL_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
+        palSProgram = new ShaderProgram(gl20, imgVS, palFS);
+
         Shader fntVS = new Shader(gl20, GUI.FNT_VERTEX_SHADER, Shader.VERTEX_SHADER);
         Shader fntFS = new Shader(gl20, GUI.FNT_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
         fntSProgram = new ShaderProgram(gl20, fntVS, fntFS);
@@ -185,8 +203,13 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         Shader cntFS = new Shader(gl20, GUI.OUTLINE_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
         cntSProgram = new ShaderProgram(gl20, cntVS, cntFS);
 
+        Shader cntPalFS = new Shader(gl20, GUI.OUTLINE_PAL_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
+        cntPalSProgram = new ShaderProgram(gl20, cntVS, cntPalFS);
+
         fntTexture = Texture.loadLocalTexture(gl20, GUI.FNT_PIC);
         qmarkTexture = Texture.loadLocalTexture(gl20, GUI.QMARK_PIC);
+        // shown until the atlas regions of the module are uploaded
+        module.getSpriteBatch().setPlaceholder(qmarkTexture);
 
         if (config.isKeepAspectRatio()) {
             setPerspective(guiResolution);
@@ -194,8 +217,8 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
 
         textHint = new Text(null, null, fntTexture, "", GLColor.awtColorToVec4(config.getHintCol()), null);
 
-        this.animator.start();
         state = State.INIT;
+        this.renderScheduler.start();
     }
 
     /**
@@ -205,6 +228,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
      */
     @Override
     public void dispose(GLAutoDrawable glad) {
+        module.getSpriteBatch().release(glad.getGL().getGL2());
         glad.getGL().getContext().destroy();
     }
 
@@ -224,40 +248,79 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         if (config.isKeepAspectRatio()) {
             setPerspective(guiResolution);
         }
+        // text glyphs are sized relative to the canvas
+        module.unbuffer();
     }
 
     /**
-     * Regular loop method (called by the FPS Animator)
+     * Render method (called by the render scheduler on demand)
      *
      * @param glad drawable object from interface
      */
     @Override
     public void display(GLAutoDrawable glad) {
         GL2 gl20 = glad.getGL().getGL2();
+        if (config.isDebugMode()) {
+            gl20 = GLCallCounter.wrap(gl20);
+        }
         switch (state) {
             case INIT:
                 state = State.RENDER;
+                renderScheduler.requestRender();
                 break;
             case RENDER:
+                // edits are patched in place (module is built again if any cannot be)
+                if (!updates.isEmpty() && !applyUpdates(gl20)) {
+                    state = State.BUILD;
+                    renderScheduler.requestRender();
+                    break;
+                }
                 gl20.glClear(GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT);
                 // move across the OpenGL render space
                 if (selected != null && dragging) {
                     selected.setPos(scrnMouseCoords);
                     endMovingSelected();
                 }
-                module.render(gl20, projMat4, primSProgram, imgSProgram, fntSProgram);
+                // textures of the built module land in the background (bounded per frame)
+                if (textureUploader.isPending() && textureUploader.upload(gl20) > 0 && !textureUploader.isPending()) {
+                    FO2IELogger.reportInfo(textureUploader.getReport(), null);
+                }
+                module.render(gl20, projMat4, primSProgram, imgSProgram, palSProgram, fntSProgram);
                 if (selected != null) {
-                    selected.render(gl20, projMat4, cntSProgram);
+                    // module draws its pictures in batches, outline needs its own buffer
+                    if (!selected.isBuffered()) {
+                        selected.buffer(gl20);
+                    }
+                    selected.render(gl20, projMat4, selected.isIndexed() ? cntPalSProgram : cntSProgram);
                 }
                 if (!textHint.isBuffered()) {
                     textHint.buffer(gl20);
                 }
                 textHint.render(gl20, projMat4, fntSProgram);
+                if (UploadStats.sample() && UploadStats.getBytesPerSecond() != lastUploadRate) {
+                    lastUploadRate = UploadStats.getBytesPerSecond();
+                    FO2IELogger.reportInfo(UploadStats.getReport(), null);
+                }
+                if (config.isDebugMode()) {
+                    GLCallCounter.endFrame();
+                    if (GLCallCounter.sample()) {
+                        FO2IELogger.reportInfo(GLCallCounter.getReport(), null);
+                    }
+                }
+                // keep rendering only while something animated is visible
+                // (animations and outline of the selected, which uses GameTime)
+                if (textureUploader.isPending()) {
+                    renderScheduler.requestFrame(RenderScheduler.MAX_FPS);
+                } else if (!gameTime.isPaused()) {
+                    renderScheduler.requestFrame((selected != null) ? GameTime.TPS : module.getAnimationFps());
+                }
                 break;
             case BUILD:
                 // suspend the loop until all components are built
-                animator.pause();
+                renderScheduler.pause();
                 textHint.unbuffer();
+                // module is built from the edited values
+                updates.clear();
                 synchronized (OBJ_MUTEX) {
                     buildComponents(gl20);
                 }
@@ -272,6 +335,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
                     JOptionPane.showMessageDialog(GUI.GL_CANVAS.getParent().getParent(), "Screenshot failed!", "Module Screenshot", JOptionPane.ERROR_MESSAGE);
                 }
                 state = State.RENDER;
+                renderScheduler.requestRender();
                 break;
             case SUSPEND:
             default:
@@ -279,6 +343,24 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         }
     }
 
+    //--------------------------------------------------------------------------
+    private boolean applyUpdates(GL2 gl20) {
+        boolean patched = true;
+        synchronized (OBJ_MUTEX) {
+            ModuleUpdate update;
+            while ((update = updates.poll()) != null) {
+                if (patched && !update.apply(gl20, module, intrface, buildMode, guiResolution)) {
+                    FO2IELogger.reportInfo("Feature " + update.getFeatureKey().getStringValue() + " cannot be updated in place, building the module again", null);
+                    patched = false;
+                }
+            }
+        }
+        if (patched) {
+            SwingUtilities.invokeLater(this::afterModuleUpdate);
+        }
+        return patched;
+    }
+
     //--------------------------------------------------------------------------
     private void buildComponents(GL2 gl20) {
         final ProgressWindow window = new ProgressWindow();
@@ -288,9 +370,9 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
                 afterModuleBuild();
                 window.dispose();
                 state = State.INIT;
-                // resume the animating loop
-                animator.resume();
                 selectedIndex = -1;
+                // resume rendering (completed build is rendered)
+                renderScheduler.resume();
             }
         };
         task.addPropertyChangeListener(new PropertyChangeListener() {
@@ -388,6 +470,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
             selected.setOutlineColor(GLColor.awtColorToVec4(config.getSelectCol()));
         }
         afterSelection();
+        renderScheduler.requestRender();
     }
 
     // selects one component by feature key
@@ -403,6 +486,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         }
 
         afterSelection();
+        renderScheduler.requestRender();
     }
 
     // select previous index of (selected components)
@@ -416,6 +500,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         }
 
         afterSelection();
+        renderScheduler.requestRender();
     }
 
     // select next index of (selected components)
@@ -430,6 +515,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         }
 
         afterSelection();
+        renderScheduler.requestRender();
     }
 
     // deselects all (CTRL + D)
@@ -439,6 +525,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
 
         selected = null;
         outline = null;
+        renderScheduler.requestRender();
     }
 
     public void selectToggleEnabled() {
@@ -449,6 +536,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
             hintComponent.setEnabled(!hintComponent.isEnabled());
             afterSelection();
         }
+        renderScheduler.requestRender();
     }
 
     public abstract void editFeature(FeatureKey fk, FeatureValue fv, GLComponent.Inheritance inh, Intrface intr);
@@ -609,6 +697,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         dragging = true;
 
         scrnMouseCoords = new Vector2f(e.getX(), e.getY());
+        renderScheduler.requestRender();
     }
 
     @Override
@@ -620,6 +709,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         dragging = false;
 
         endMovingSelected();
+        renderScheduler.requestRender();
     }
 
     /**
@@ -627,6 +717,11 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
      */
     public abstract void afterModuleBuild();
 
+    /**
+     * Action which takes place after module update (edit patched in place)
+     */
+    public abstract void afterModuleUpdate();
+
     /**
      * Action which takes place after selection
      */
@@ -638,6 +733,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         if (textHint != null) {
             textHint.setEnabled(true);
         }
+        renderScheduler.requestRender();
     }
 
     @Override
@@ -646,6 +742,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         if (textHint != null) {
             textHint.setEnabled(false);
         }
+        renderScheduler.requestRender();
     }
 
     @Override
@@ -657,6 +754,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         moveSelected(e.getX(), e.getY());
 
         dragging = true;
+        renderScheduler.requestRender();
     }
 
     @Override
@@ -670,6 +768,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         }
         scrnMouseCoords = new Vector2f(e.getX(), e.getY());
         showShortHandHintText();
+        renderScheduler.requestRender();
     }
 
     @Override
@@ -743,6 +842,7 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         if (ke.getKeyCode() == KeyEvent.VK_UP && !ke.isShiftDown()) {
             moveSelectedUp(1.0f);
         }
+        renderScheduler.requestRender();
     }
 
     @Override
@@ -767,6 +867,14 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         this.imgSProgram = imgSProgram;
     }
 
+    public ShaderProgram getPalSProgram() {
+        return palSProgram;
+    }
+
+    public void setPalSProgram(ShaderProgram palSProgram) {
+        this.palSProgram = palSProgram;
+    }
+
     public ShaderProgram getFntSProgram() {
         return fntSProgram;
     }
@@ -783,6 +891,14 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         this.cntSProgram = cntSProgram;
     }
 
+    public ShaderProgram getCntPalSProgram() {
+        return cntPalSProgram;
+    }
+
+    public void setCntPalSProgram(ShaderProgram cntPalSProgram) {
+        this.cntPalSProgram = cntPalSProgram;
+    }
+
     public int getSelectedIndex() {
         return selectedIndex;
     }
@@ -819,8 +935,45 @@ public abstract class ModuleRenderer implements GLEventListener, MouseListener,
         return config;
     }
 
-    public FPSAnimator getAnimator() {
-        return animator;
+    public RenderScheduler getRenderScheduler() {
+        return renderScheduler;
+    }
+
+    /**
+     * Sets state of the machine and requests render (so the state is acted
+     * upon)
+     *
+     * @param state new state
+     */
+    public void setState(State state) {
+        this.state = state;
+        renderScheduler.requestRender();
+    }
+
+    /**
+     * Updates the built module after single feature edit. Components which
+     * depend on the feature are patched in place on the next render, if they
+     * cannot be (or module is not rendered) module is built again.
+     *
+     * @param featureKey edited feature key
+     * @param featureValue edited feature value (already changed)
+     * @param oldValue string value before the edit
+     */
+    public void update(FeatureKey featureKey, FeatureValue featureValue, String oldValue) {
+        if (state == State.RENDER) {
+            updates.add(new ModuleUpdate(featureKey, featureValue, oldValue));
+            renderScheduler.requestRender();
+        } else {
+            setState(State.BUILD);
+        }
+    }
+
+    /**
+     * Requests render of the module (after changes made outside of the
+     * renderer)
+     */
+    public void requestRender() {
+        renderScheduler.requestRender();
     }
 
     public GLComponent getSelected() {
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.main;
+
+import com.jogamp.opengl.GL2;
+import java.io.IOException;
+import java.util.List;
+import org.joml.Vector2f;
+import rs.alexanderstojanovich.fo2ie.feature.FeatureKey;
+import rs.alexanderstojanovich.fo2ie.feature.FeatureValue;
+import rs.alexanderstojanovich.fo2ie.feature.ImageWrapper;
+import rs.alexanderstojanovich.fo2ie.feature.MyRectangle;
+import rs.alexanderstojanovich.fo2ie.feature.SingleValue;
+import rs.alexanderstojanovich.fo2ie.intrface.Intrface;
+import rs.alexanderstojanovich.fo2ie.intrface.Resolution;
+import rs.alexanderstojanovich.fo2ie.intrface.ResolutionPragma;
+import rs.alexanderstojanovich.fo2ie.ogl.AddressableQuad;
+import rs.alexanderstojanovich.fo2ie.ogl.Animation;
+import rs.alexanderstojanovich.fo2ie.ogl.GLComponent;
+import rs.alexanderstojanovich.fo2ie.ogl.Quad;
+import rs.alexanderstojanovich.fo2ie.ogl.Text;
+import rs.alexanderstojanovich.fo2ie.ogl.Texture;
+import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
+import rs.alexanderstojanovich.fo2ie.util.Pair;
+
+/**
+ * Single feature edit patched into the built module (instead of building the
+ * module again). Components which depend on the edited feature are moved,
+ * resized or get the new texture as the build would lay them out. Position
+ * is moved by the difference of the old and the new (scaled) rectangle, so
+ * offsets of the section are kept. The new value is captured when the edit
+ * is made, so several queued edits of the same feature are applied step by
+ * step. Edits which change more than these
+ * components (main picture and its position, component becoming other kind
+ * of component, animation frames) are not patched, module is built again.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class ModuleUpdate {
+
+    protected final FeatureKey featureKey;
+    protected final FeatureValue featureValue;
+    // value the module was built with (before the edit)
+    protected final String oldValue;
+    // value after the edit (feature value may be edited again before this is applied)
+    protected final String newValue;
+
+    /**
+     * Creates new update of the edited feature
+     *
+     * @param featureKey edited feature key
+     * @param featureValue edited feature value (already changed)
+     * @param oldValue string value before the edit
+     */
+    public ModuleUpdate(FeatureKey featureKey, FeatureValue featureValue, String oldValue) {
+        this.featureKey = featureKey;
+        this.featureValue = featureValue;
+        this.oldValue = oldValue;
+        this.newValue = featureValue.getStringValue();
+    }
+
+    /**
+     * Patches the components of the module which depend on the edited
+     * feature. Requires current GL context (textures of the changed pictures
+     * are loaded).
+     *
+     * @param gl20 GL2.0 binding
+     * @param module built module
+     * @param intrface interface module is built from
+     * @param buildMode build mode module is built with
+     * @param resolution resolution module is built for (TARGET_RES)
+     * @return is edit patched (if not module has to be built again)
+     */
+    public boolean apply(GL2 gl20, Module module, Intrface intrface, ModuleRenderer.BuildMode buildMode, Resolution resolution) {
+        // edited value is overridden (not the one module is built from)
+        if (getBuiltValue(intrface, buildMode, resolution) != featureValue) {
+            return false;
+        }
+        if (newValue.equals(oldValue)) {
+            return true;
+        }
+
+        final List<GLComponent> dependents = module.getDependents(featureKey);
+        if (dependents.isEmpty()) {
+            return false;
+        }
+        for (GLComponent component : dependents) {
+            // section offsets depend on these
+            if (component == ModuleBuildTask.root || component == ModuleBuildTask.canvas) {
+                return false;
+            }
+        }
+
+        switch (featureValue.getType()) {
+            case RECT4:
+                return applyRect(dependents);
+            case IMAGE:
+                return applyImage(gl20, module, dependents);
+            case SINGLE_VALUE:
+                return applySplit(dependents);
+            default:
+                return false;
+        }
+    }
+
+    // value of the edited feature the module is built from
+    private FeatureValue getBuiltValue(Intrface intrface, ModuleRenderer.BuildMode buildMode, Resolution resolution) {
+        if (buildMode == ModuleRenderer.BuildMode.TARGET_RES) {
+            ResolutionPragma resolutionPragma = intrface.getModifiedBinds().customResolutions.stream().filter(x -> x.getResolution().equals(resolution)).findFirst().orElse(null);
+            if (resolutionPragma != null && resolutionPragma.getCustomFeatMap().containsKey(featureKey)) {
+                return resolutionPragma.getCustomFeatMap().get(featureKey);
+            }
+        }
+        return intrface.getModifiedBinds().commonFeatMap.get(featureKey);
+    }
+
+    // moves (and resizes) components positioned by the edited rectangle
+    private boolean applyRect(List<GLComponent> dependents) {
+        final FeatureValue oldFeatureValue = FeatureValue.valueOf(oldValue);
+        final FeatureValue newFeatureValue = FeatureValue.valueOf(newValue);
+        if (!(oldFeatureValue instanceof MyRectangle) || !(newFeatureValue instanceof MyRectangle)) {
+            return false;
+        }
+
+        // both rectangles scaled to the drawing surface
+        final Pair<Float, Float> scale = ModuleBuildTask.modeScaleXYFactor;
+        final MyRectangle oldRect = ((MyRectangle) oldFeatureValue).scaleXY(scale.getKey(), scale.getValue(), new MyRectangle());
+        final MyRectangle newRect = ((MyRectangle) newFeatureValue).scaleXY(scale.getKey(), scale.getValue(), new MyRectangle());
+
+        final int width = newRect.lengthX();
+        final int height = newRect.lengthY();
+
+        // movement of the top left corner, bottom right corner and the center
+        final float minX = newRect.minX - oldRect.minX;
+        final float minY = newRect.minY - oldRect.minY;
+        final float maxX = newRect.maxX - oldRect.maxX;
+        final float maxY = newRect.maxY - oldRect.maxY;
+        final float centerX = (minX + maxX) / 2.0f;
+        final float centerY = (minY + maxY) / 2.0f;
+
+        for (GLComponent component : dependents) {
+            if (component.getPosFeatureKey() != featureKey) {
+                return false;
+            }
+            if (component instanceof Text) {
+                if (width <= 0 || height <= 0) {
+                    return false;
+                }
+                // text and its overlay share the position
+                Text text = (Text) component;
+                text.setPos(new Vector2f(text.getPos()).add(centerX, centerY));
+                text.getOverlay().setWidth(width);
+                text.getOverlay().setHeight(height);
+                text.setScale(ModuleBuildTask.getTextScale(text.getCharWidth(), text.getCharHeight(), width, height));
+            } else if (component instanceof Animation) {
+                if (width <= 0 || height <= 0) {
+                    return false;
+                }
+                // animation spans the rectangle
+                Animation anim = (Animation) component;
+                anim.setPos(new Vector2f(anim.getPos()).add(centerX, centerY));
+                anim.setWidth(width);
+                anim.setHeight(height);
+            } else if (component instanceof AddressableQuad) {
+                AddressableQuad aq = (AddressableQuad) component;
+                int dw = 0, dh = 0;
+                // question mark spans the rectangle where there is no step
+                if (aq.getLinkFeatureKey() == null) {
+                    if (aq.getStepX() == 0.0f) {
+                        dw = width - aq.getWidth();
+                        aq.setWidth(width);
+                    }
+                    if (aq.getStepY() == 0.0f) {
+                        dh = height - aq.getHeight();
+                        aq.setHeight(height);
+                    }
+                }
+                aq.setPos(new Vector2f(aq.getPos()).add(minX + dw / 2.0f, minY + dh / 2.0f));
+                aq.getPosMax().add(maxX - dw / 2.0f, maxY - dh / 2.0f);
+            } else if (component instanceof Quad) {
+                Quad quad = (Quad) component;
+                if (quad.getLinkFeatureKey() != null) {
+                    // picture keeps its size, it is placed at the top left corner
+                    quad.setPos(new Vector2f(quad.getPos()).add(minX, minY));
+                } else {
+                    // question mark spans the rectangle
+                    quad.setPos(new Vector2f(quad.getPos()).add(centerX, centerY));
+                    quad.setWidth(width);
+                    quad.setHeight(height);
+                }
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // replaces texture (and size) of the components showing the edited picture
+    private boolean applyImage(GL2 gl20, Module module, List<GLComponent> dependents) {
+        final ImageWrapper iw = (ImageWrapper) featureValue;
+        // picture is edited again, the later (queued) edit replaces it
+        if (!iw.getStringValue().equals(newValue)) {
+            return true;
+        }
+        try {
+            iw.loadImages();
+        } catch (IOException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+            return false;
+        }
+        if (iw.getImageCount() == 0) {
+            return false;
+        }
+
+        final Pair<Float, Float> scale = ModuleBuildTask.modeScaleXYFactor;
+        final int width = Math.round(scale.getKey() * iw.getImage(0).getWidth());
+        final int height = Math.round(scale.getValue() * iw.getImage(0).getHeight());
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+
+        for (GLComponent component : dependents) {
+            if (component.getLinkFeatureKey() != featureKey) {
+                return false;
+            }
+            // picture is placed at the top left corner (its center moves with its size)
+            final int dw = width - component.getWidth();
+            final int dh = height - component.getHeight();
+            if (component instanceof AddressableQuad) {
+                AddressableQuad aq = (AddressableQuad) component;
+                aq.setPos(new Vector2f(aq.getPos()).add(dw / 2.0f, dh / 2.0f));
+                aq.getPosMax().sub(dw / 2.0f, dh / 2.0f);
+                aq.setWidth(width);
+                aq.setHeight(height);
+                aq.setTexture(loadTexture(gl20, module, iw, aq.getTexture()));
+            } else if (component instanceof Quad && iw.getImageCount() == 1) {
+                Quad quad = (Quad) component;
+                quad.setPos(new Vector2f(quad.getPos()).add(dw / 2.0f, dh / 2.0f));
+                quad.setWidth(width);
+                quad.setHeight(height);
+                quad.setTexture(loadTexture(gl20, module, iw, quad.getTexture()));
+            } else {
+                // animation (frames) or picture becoming one
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // changes step of the addressable quads split by the edited value
+    private boolean applySplit(List<GLComponent> dependents) {
+        final FeatureValue newFeatureValue = FeatureValue.valueOf(newValue);
+        if (!(newFeatureValue instanceof SingleValue)) {
+            return false;
+        }
+        final float step = ((SingleValue) newFeatureValue).getNumber();
+
+        for (GLComponent component : dependents) {
+            // question mark is sized by the split, others become other kind of component
+            if (!(component instanceof AddressableQuad) || component.getLinkFeatureKey() == null) {
+                return false;
+            }
+            AddressableQuad aq = (AddressableQuad) component;
+            Pair<FeatureKey, FeatureKey> splitValues = FeatureKey.getSplitValues(aq.getPosFeatureKey());
+            final float stepX = (splitValues.getKey() == featureKey) ? step : aq.getStepX();
+            final float stepY = (splitValues.getValue() == featureKey) ? step : aq.getStepY();
+            if (stepX == 0.0f && stepY == 0.0f) {
+                return false;
+            }
+            aq.setStepX(stepX);
+            aq.setStepY(stepY);
+        }
+
+        return true;
+    }
+
+    // texture of the first image (standalone, not packed into the section atlas) replacing the old one
+    private static Texture loadTexture(GL2 gl20, Module module, ImageWrapper iw, Texture oldTexture) {
+        if (iw.isIndexed()) {
+            return module.replaceTexture(oldTexture, Texture.loadTexture(iw.getFile(), gl20, iw.getFrame(0), iw.getPalette()));
+        } else {
+            return module.replaceTexture(oldTexture, Texture.loadTexture(iw.getFile(), gl20, iw.getImage(0)));
+        }
+    }
+
+    public FeatureKey getFeatureKey() {
+        return featureKey;
+    }
+
+    public FeatureValue getFeatureValue() {
+        return featureValue;
+    }
+
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    public String getNewValue() {
+        return newValue;
+    }
+
+}
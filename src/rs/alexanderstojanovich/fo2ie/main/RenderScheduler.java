@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.main;
+
+import com.jogamp.newt.Window;
+import com.jogamp.opengl.GLAutoDrawable;
+import java.awt.Component;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
+
+/**
+ * Renders drawables on demand (replaces continuous FPS animator). Renders are
+ * requested on input, edits and builds, animated content requests the next
+ * render itself (delayed by its frame interval). Requests made before the
+ * pending render are merged into it, so idle editor does not render at all.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class RenderScheduler {
+
+    // upper limit for the animated content
+    public static final int MAX_FPS = 60;
+
+    private final List<GLAutoDrawable> drawables = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Render Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean started = false;
+    private volatile boolean paused = false;
+
+    // when the pending render is due (nano time), none if Long.MAX_VALUE
+    private final AtomicLong nextRender = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong renderCount = new AtomicLong();
+
+    /**
+     * Creates new render scheduler
+     *
+     * @param drawables drawables to render
+     */
+    public RenderScheduler(GLAutoDrawable... drawables) {
+        for (GLAutoDrawable drawable : drawables) {
+            this.drawables.add(drawable);
+        }
+    }
+
+    /**
+     * Adds drawable to render
+     *
+     * @param drawable GL drawable
+     */
+    public void add(GLAutoDrawable drawable) {
+        drawables.add(drawable);
+    }
+
+    /**
+     * Starts rendering on demand (first render is requested). Can be called
+     * more than once (by each renderer).
+     */
+    public void start() {
+        started = true;
+        requestRender();
+    }
+
+    /**
+     * Pauses rendering, requests are ignored until resumed
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes rendering and requests the render
+     */
+    public void resume() {
+        paused = false;
+        requestRender();
+    }
+
+    /**
+     * Requests render as soon as possible
+     */
+    public void requestRender() {
+        requestRender(0L);
+    }
+
+    /**
+     * Requests render after the delay. If render is already pending
+     * (sooner) this request is merged into it.
+     *
+     * @param delayMillis delay in milliseconds
+     */
+    public void requestRender(long delayMillis) {
+        if (!started || paused) {
+            return;
+        }
+        final long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        long pending;
+        do {
+            pending = nextRender.get();
+            if (pending <= due) {
+                return;
+            }
+        } while (!nextRender.compareAndSet(pending, due));
+        executor.schedule(() -> render(due), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Requests render after the frame interval of the animated content
+     *
+     * @param fps frames per second of the animated content (limited to
+     * MAX_FPS)
+     */
+    public void requestFrame(int fps) {
+        if (fps > 0) {
+            requestRender(1000L / Math.min(fps, MAX_FPS));
+        }
+    }
+
+    private void render(long due) {
+        // only the earliest request renders (others were merged into it)
+        if (!nextRender.compareAndSet(due, Long.MAX_VALUE) || paused) {
+            return;
+        }
+        for (GLAutoDrawable drawable : drawables) {
+            if (drawable.isRealized() && isShowing(drawable)) {
+                try {
+                    drawable.display();
+                } catch (RuntimeException ex) {
+                    FO2IELogger.reportError(ex.getMessage(), ex);
+                }
+            }
+        }
+        renderCount.incrementAndGet();
+    }
+
+    private static boolean isShowing(GLAutoDrawable drawable) {
+        if (drawable instanceof Component) {
+            return ((Component) drawable).isShowing();
+        } else if (drawable instanceof Window) {
+            return ((Window) drawable).isVisible();
+        }
+        return true;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Gets number of renders so far
+     *
+     * @return render count
+     */
+    public long getRenderCount() {
+        return renderCount.get();
+    }
+
+}
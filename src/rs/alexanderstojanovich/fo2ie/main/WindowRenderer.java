@@ -23,7 +23,6 @@ import com.jogamp.newt.event.MouseListener;
 import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLEventListener;
-import com.jogamp.opengl.util.FPSAnimator;
 import com.jogamp.opengl.util.GLBuffers;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -42,6 +41,7 @@ import static rs.alexanderstojanovich.fo2ie.main.GUI.GL_WINDOW;
 import rs.alexanderstojanovich.fo2ie.ogl.Shader;
 import rs.alexanderstojanovich.fo2ie.ogl.ShaderProgram;
 import rs.alexanderstojanovich.fo2ie.ogl.Texture;
+import rs.alexanderstojanovich.fo2ie.ogl.TextureUploader;
 import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
 
 /**
@@ -54,6 +54,8 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
     public static final Object OBJ_SYNC = new Object();
 
     private final Configuration config = Configuration.getInstance();
+    private final GameTime gameTime = GameTime.getInstance();
+    private final TextureUploader textureUploader = TextureUploader.getInstance();
 
     public static final int DEF_WIDTH = 800;
     public static final int DEF_HEIGHT = 600;
@@ -62,9 +64,10 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
     protected final Module module;
     protected final Intrface intrface;
 
-    // shader programs {primitive, image and font}
+    // shader programs {primitive, image (true color and palette-indexed) and font}
     private ShaderProgram primSProgram;
     private ShaderProgram imgSProgram;
+    private ShaderProgram palSProgram;
     private ShaderProgram fntSProgram;
 
     // textures
@@ -73,8 +76,8 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
     // projection matrix
     private final Matrix4f projMat4 = new Matrix4f().identity();
 
-    // animator used for rendering in the loop
-    private final FPSAnimator animator;
+    // renders on demand (input, edits, builds and visible animations)
+    private final RenderScheduler renderScheduler;
 
     protected Vector4f savedColor = new Vector4f();
     private Vector2f scrnMouseCoords;
@@ -103,14 +106,14 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
     /**
      * Create JOGL Animator of the built module
      *
-     * @param animator parsed FPS animator
+     * @param renderScheduler render scheduler (renders on demand)
      * @param module GL module with components
      * @param intrface FOnline interface
      * @param guiResolution GUI resolution field
      * @param guiSectionName GUI section name
      */
-    public WindowRenderer(FPSAnimator animator, Module module, Intrface intrface, Resolution guiResolution, Section.SectionName guiSectionName) {
-        this.animator = animator;
+    public WindowRenderer(RenderScheduler renderScheduler, Module module, Intrface intrface, Resolution guiResolution, Section.SectionName guiSectionName) {
+        this.renderScheduler = renderScheduler;
         this.module = module;
         this.intrface = intrface;
         this.guiResolution = guiResolution;
@@ -155,6 +158,9 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
         Shader imgFS = new Shader(gl20, GUI.IMG_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
         imgSProgram = new ShaderProgram(gl20, imgVS, imgFS);
 
+        Shader palFS = new Shader(gl20, GUI.IMG_PAL_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
+        palSProgram = new ShaderProgram(gl20, imgVS, palFS);
+
         Shader fntVS = new Shader(gl20, GUI.FNT_VERTEX_SHADER, Shader.VERTEX_SHADER);
         Shader fntFS = new Shader(gl20, GUI.FNT_FRAGMENT_SHADER, Shader.FRAGMENT_SHADER);
         fntSProgram = new ShaderProgram(gl20, fntVS, fntFS);
@@ -166,8 +172,8 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
             setPerspective(guiResolution);
         }
 
-        this.animator.start();
         state = State.INIT;
+        this.renderScheduler.start();
     }
 
     /**
@@ -199,7 +205,7 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
     }
 
     /**
-     * Regular loop method (called by the FPS Animator)
+     * Render method (called by the render scheduler on demand)
      *
      * @param glad drawable object from interface
      */
@@ -209,15 +215,27 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
         switch (state) {
             case INIT:
                 state = State.RENDER;
+                renderScheduler.requestRender();
                 break;
             case RENDER:
                 gl20.glClear(GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT);
-                module.render(gl20, projMat4, primSProgram, imgSProgram, fntSProgram);
+                // textures of the built module land in the background (canvas may not be rendering)
+                if (textureUploader.isPending() && textureUploader.upload(gl20) > 0 && !textureUploader.isPending()) {
+                    FO2IELogger.reportInfo(textureUploader.getReport(), null);
+                }
+                module.render(gl20, projMat4, primSProgram, imgSProgram, palSProgram, fntSProgram);
+                // keep rendering only while animations are visible (or textures are landing)
+                if (textureUploader.isPending()) {
+                    renderScheduler.requestFrame(RenderScheduler.MAX_FPS);
+                } else if (!gameTime.isPaused()) {
+                    renderScheduler.requestFrame(module.getAnimationFps());
+                }
                 break;
             case SCREENSHOT:
                 BufferedImage screenshot = createScreenshot(gl20);
                 saveScreenshot(screenshot);
                 state = State.RENDER;
+                renderScheduler.requestRender();
                 break;
             case SUSPEND:
                 break;
@@ -349,7 +367,7 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
     public void keyPressed(KeyEvent ke) {
         if (ke.getKeyCode() == KeyEvent.VK_F12) {
             state = WindowRenderer.State.SCREENSHOT;
-
+            renderScheduler.requestRender();
         }
 
         if (ke.getKeyCode() == KeyEvent.VK_ESCAPE) {
@@ -385,6 +403,14 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
         this.imgSProgram = imgSProgram;
     }
 
+    public ShaderProgram getPalSProgram() {
+        return palSProgram;
+    }
+
+    public void setPalSProgram(ShaderProgram palSProgram) {
+        this.palSProgram = palSProgram;
+    }
+
     public ShaderProgram getFntSProgram() {
         return fntSProgram;
     }
@@ -421,8 +447,8 @@ public abstract class WindowRenderer implements GLEventListener, MouseListener,
         return config;
     }
 
-    public FPSAnimator getAnimator() {
-        return animator;
+    public RenderScheduler getRenderScheduler() {
+        return renderScheduler;
     }
 
     public Vector2f getScrnMouseCoords() {
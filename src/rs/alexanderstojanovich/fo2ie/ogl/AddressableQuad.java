@@ -31,7 +31,6 @@ import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
 import rs.alexanderstojanovich.fo2ie.main.GameTime;
 import rs.alexanderstojanovich.fo2ie.util.GLColor;
-import rs.alexanderstojanovich.fo2ie.util.GLCoords;
 import rs.alexanderstojanovich.fo2ie.util.UniqueIdUtils;
 
 /**
@@ -73,6 +72,8 @@ public class AddressableQuad implements GLComponent {
 
     private boolean buffered = false;
 
+    private final ModelTransform transform = new ModelTransform(true);
+
     private final GameTime gameTime = GameTime.getInstance();
 
     private final String uniqueId;
@@ -88,9 +89,11 @@ public class AddressableQuad implements GLComponent {
         }
         CONST_INT_BUFFER.flip();
     }
-    private final float stepX;
-    private final float stepY;
+    private float stepX;
+    private float stepY;
     private final Vector2f posMax;
+    // current (stepped) position, reused every render
+    private final Vector2f animPos = new Vector2f();
 
     /**
      * Create addressable new quad with resize factor
@@ -121,11 +124,29 @@ public class AddressableQuad implements GLComponent {
         initUVs();
     }
 
+    private int getCountX() {
+        return (stepX == 0) ? 0 : Math.round(Math.abs(posMax.x - pos.x) / stepX);
+    }
+
+    private int getCountY() {
+        return (stepY == 0) ? 0 : Math.round(Math.abs(posMax.y - pos.y) / stepY);
+    }
+
+    /**
+     * Gets number of steps (positions) this quad goes through in one second
+     * (one GameTime cycle)
+     *
+     * @return step count
+     */
+    public int getStepCount() {
+        return Math.max(getCountX(), getCountY());
+    }
+
     private Vector2f nextPos() {
-        Vector2f res = new Vector2f(pos);
+        final Vector2f res = animPos;
 
-        final int countX = (stepX == 0) ? 0 : Math.round(Math.abs(posMax.x - pos.x) / stepX);
-        final int countY = (stepY == 0) ? 0 : Math.round(Math.abs(posMax.y - pos.y) / stepY);
+        final int countX = getCountX();
+        final int countY = getCountY();
 
         double q = (GameTime.TPS - gameTime.getGameTicks()) / (double) GameTime.TPS;
         int i = (countX == 0) ? 0 : (int) Math.floorMod(Math.round((1.0 - q) * countX), countX);
@@ -138,10 +159,16 @@ public class AddressableQuad implements GLComponent {
     }
 
     private void initUVs() {
-        uvs[0] = new Vector2f(0.0f, 1.0f); // (-1.0f, -1.0f)
-        uvs[1] = new Vector2f(1.0f, 1.0f); // (1.0f, -1.0f)
-        uvs[2] = new Vector2f(1.0f, 0.0f); // (1.0f, 1.0f)
-        uvs[3] = new Vector2f(0.0f, 0.0f); // (-1.0f, 1.0f)
+        // image takes the top left part of the texture (if texture is padded)
+        // or its packed region (if texture is region of an atlas page)
+        final float minU = texture.getMinU();
+        final float minV = texture.getMinV();
+        final float maxU = texture.getMaxU();
+        final float maxV = texture.getMaxV();
+        uvs[0] = new Vector2f(minU, maxV); // (-1.0f, -1.0f)
+        uvs[1] = new Vector2f(maxU, maxV); // (1.0f, -1.0f)
+        uvs[2] = new Vector2f(maxU, minV); // (1.0f, 1.0f)
+        uvs[3] = new Vector2f(minU, minV); // (-1.0f, 1.0f)
     }
 
     @Override
@@ -176,9 +203,10 @@ public class AddressableQuad implements GLComponent {
         } else {
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
 
-            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, 0, fb);
+            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, 0, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, fb);
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
         }
+        UploadStats.add(VERTEX_COUNT * VERTEX_SIZE * Float.BYTES);
         //----------------------------------------------------------------------
         if (ibo == 0) {
             IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
@@ -189,23 +217,29 @@ public class AddressableQuad implements GLComponent {
 
             gl20.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, INDICES.length * Integer.BYTES, CONST_INT_BUFFER, GL2.GL_STATIC_DRAW);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+            UploadStats.add(INDICES.length * Integer.BYTES);
         }
         //----------------------------------------------------------------------
         buffered = true;
     }
 
-    private Matrix4f calcModelMatrix(Vector2f pos) {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(posGL.x, posGL.y, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = giveRelativeWidth();
-        float sy = giveRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
+    /**
+     * Deletes vertex buffer of this quad. Requires current GL context.
+     *
+     * @param gl20 GL2 binding
+     */
+    @Override
+    public void release(GL2 gl20) {
+        if (vbo != 0) {
+            gl20.glDeleteBuffers(1, GLBuffers.newDirectIntBuffer(new int[]{vbo}));
+            vbo = 0;
+        }
+        buffered = false;
+    }
 
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
+    // model matrix and GL area are computed again only when something has changed
+    private ModelTransform transform() {
+        return transform.update(nextPos(), giveRelativeWidth(), giveRelativeHeight(), GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
     }
 
     /**
@@ -229,7 +263,7 @@ public class AddressableQuad implements GLComponent {
             program.bindAttribute(gl20, 0, "pos");
             program.bindAttribute(gl20, 1, "uv");
 
-            Matrix4f modelMat4 = calcModelMatrix(nextPos());
+            Matrix4f modelMat4 = transform().getModelMatrix();
             program.updateUniform(gl20, projMat4, "projectionMatrix");
             program.updateUniform(gl20, modelMat4, "modelMatrix");
             program.updateUniform(gl20, color, "color");
@@ -247,19 +281,6 @@ public class AddressableQuad implements GLComponent {
         }
     }
 
-    private Matrix4f calcModelMatrix(Vector2f pos, float xinc, float ydec) {
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(pos.x + xinc, pos.y + ydec, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = giveRelativeWidth();
-        float sy = giveRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
-
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
-    }
-
     /**
      * Render font
      *
@@ -282,7 +303,7 @@ public class AddressableQuad implements GLComponent {
             fntProgram.bindAttribute(gl20, 0, "pos");
             fntProgram.bindAttribute(gl20, 1, "uv");
 
-            Matrix4f modelMat4 = calcModelMatrix(nextPos(), xinc, ydec);
+            Matrix4f modelMat4 = transform().getModelMatrix(xinc, ydec);
             fntProgram.updateUniform(gl20, projMat4, "projectionMatrix");
             fntProgram.updateUniform(gl20, modelMat4, "modelMatrix");
             fntProgram.updateUniform(gl20, color, "color");
@@ -300,6 +321,16 @@ public class AddressableQuad implements GLComponent {
         }
     }
 
+    @Override
+    public boolean isIndexed() {
+        return texture.isIndexed();
+    }
+
+    @Override
+    public Texture getCurrentTexture() {
+        return texture;
+    }
+
     @Override
     public Type getType() {
         return type;
@@ -374,11 +405,7 @@ public class AddressableQuad implements GLComponent {
 
     @Override
     public Rectanglef getGLArea() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        float rw = getRelativeWidth();
-        float rh = getRelativeHeight();
-        Rectanglef rect = new Rectanglef(posGL.x - rw, posGL.y - rh, posGL.x + rw, posGL.y + rh);
-        return rect;
+        return transform().getGLArea();
     }
 
     @Override
@@ -416,6 +443,8 @@ public class AddressableQuad implements GLComponent {
 
     public void setTexture(Texture texture) {
         this.texture = texture;
+        initUVs();
+        this.buffered = false;
     }
 
     public float getScale() {
@@ -489,10 +518,18 @@ public class AddressableQuad implements GLComponent {
         return stepX;
     }
 
+    public void setStepX(float stepX) {
+        this.stepX = stepX;
+    }
+
     public float getStepY() {
         return stepY;
     }
 
+    public void setStepY(float stepY) {
+        this.stepY = stepY;
+    }
+
     public Vector2f getPosMax() {
         return posMax;
     }
@@ -24,13 +24,13 @@ import java.util.Objects;
 import org.joml.Matrix4f;
 import org.joml.Rectanglef;
 import org.joml.Vector2f;
+import org.joml.Vector3f;
 import org.joml.Vector4f;
 import rs.alexanderstojanovich.fo2ie.feature.FeatureKey;
 import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
 import rs.alexanderstojanovich.fo2ie.main.GameTime;
 import rs.alexanderstojanovich.fo2ie.util.GLColor;
-import rs.alexanderstojanovich.fo2ie.util.GLCoords;
 import rs.alexanderstojanovich.fo2ie.util.UniqueIdUtils;
 
 /**
@@ -78,6 +78,16 @@ public class Animation implements GLComponent {
 
     private boolean buffered = false;
 
+    // frames packed as one strip (equal cells of the same atlas page) of the
+    // same size are stepped in the vertex shader: UVs stay of the first frame,
+    // offset is frame index in this grid (cell U, cell V, columns), zero if
+    // not a strip (frames of different size use their own UVs)
+    private final Vector3f frameGrid = new Vector3f();
+    private static final Vector3f NO_FRAME_GRID = new Vector3f();
+    private static final float GRID_EPSILON = 1E-5f;
+
+    private final ModelTransform transform = new ModelTransform(true);
+
     private final String uniqueId;
 
     static {
@@ -112,7 +122,8 @@ public class Animation implements GLComponent {
         this.width = width;
         this.height = height;
         this.texture = texture;
-        initUVs();
+        initUVs(texture[0]);
+        initFrameGrid();
     }
 
     /**
@@ -136,14 +147,59 @@ public class Animation implements GLComponent {
         this.height = height;
         this.texture = texture;
         this.pos = pos;
-        initUVs();
+        initUVs(texture[0]);
+        initFrameGrid();
+    }
+
+    private void initUVs(Texture frame) {
+        // image takes the top left part of the texture (if texture is padded)
+        // or its packed region (if texture is region of an atlas page)
+        final float minU = frame.getMinU();
+        final float minV = frame.getMinV();
+        final float maxU = frame.getMaxU();
+        final float maxV = frame.getMaxV();
+        uvs[0] = new Vector2f(minU, maxV); // (-1.0f, -1.0f)
+        uvs[1] = new Vector2f(maxU, maxV); // (1.0f, -1.0f)
+        uvs[2] = new Vector2f(maxU, minV); // (1.0f, 1.0f)
+        uvs[3] = new Vector2f(minU, minV); // (-1.0f, 1.0f)
+    }
+
+    // detects whether frames are strip cells (same page, same size, row by row)
+    private void initFrameGrid() {
+        frameGrid.zero();
+        final int n = texture.length;
+        final Texture first = texture[0];
+        if (n < 2 || first.getPage() == null) {
+            return;
+        }
+        int columns = 1;
+        while (columns < n && Math.abs(texture[columns].getMinV() - first.getMinV()) < GRID_EPSILON) {
+            columns++;
+        }
+        final float cellU = (columns > 1) ? texture[1].getMinU() - first.getMinU() : 0.0f;
+        final float cellV = (columns < n) ? texture[columns].getMinV() - first.getMinV() : 0.0f;
+        final float width = first.getMaxU() - first.getMinU();
+        final float height = first.getMaxV() - first.getMinV();
+        for (int i = 1; i < n; i++) {
+            final Texture frame = texture[i];
+            if (frame.getPage() != first.getPage()
+                    || Math.abs(frame.getMaxU() - frame.getMinU() - width) >= GRID_EPSILON
+                    || Math.abs(frame.getMaxV() - frame.getMinV() - height) >= GRID_EPSILON
+                    || Math.abs(frame.getMinU() - first.getMinU() - (i % columns) * cellU) >= GRID_EPSILON
+                    || Math.abs(frame.getMinV() - first.getMinV() - (i / columns) * cellV) >= GRID_EPSILON) {
+                return;
+            }
+        }
+        frameGrid.set(cellU, cellV, columns);
     }
 
-    private void initUVs() {
-        uvs[0] = new Vector2f(0.0f, 1.0f); // (-1.0f, -1.0f)
-        uvs[1] = new Vector2f(1.0f, 1.0f); // (1.0f, -1.0f)
-        uvs[2] = new Vector2f(1.0f, 0.0f); // (1.0f, 1.0f)
-        uvs[3] = new Vector2f(0.0f, 0.0f); // (-1.0f, 1.0f)
+    /**
+     * Whether frames are packed as one strip (stepped in the shader)
+     *
+     * @return is strip
+     */
+    public boolean isStrip() {
+        return frameGrid.z > 0.0f;
     }
 
     @Override
@@ -178,9 +234,10 @@ public class Animation implements GLComponent {
         } else {
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
 
-            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, 0, fb);
+            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, 0, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, fb);
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
         }
+        UploadStats.add(VERTEX_COUNT * VERTEX_SIZE * Float.BYTES);
         //----------------------------------------------------------------------
         if (ibo == 0) {
             IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
@@ -191,30 +248,45 @@ public class Animation implements GLComponent {
 
             gl20.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, INDICES.length * Integer.BYTES, CONST_INT_BUFFER, GL2.GL_STATIC_DRAW);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+            UploadStats.add(INDICES.length * Integer.BYTES);
         }
         //----------------------------------------------------------------------
 
         buffered = true;
     }
 
+    // frames may differ in size (and padding or atlas region), UVs follow the current frame
+    private void updateUVs(GL2 gl20, Texture frame) {
+        if (uvs[1].x != frame.getMaxU() || uvs[1].y != frame.getMaxV()
+                || uvs[3].x != frame.getMinU() || uvs[3].y != frame.getMinV()) {
+            initUVs(frame);
+            buffer(gl20);
+        }
+    }
+
     private int getFrame() {
         double q = (GameTime.TPS - gameTime.getGameTicks()) / (double) GameTime.TPS;
         frameIndex = (int) Math.floorMod(Math.round((1.0 - q) * texture.length), texture.length);
         return frameIndex;
     }
 
-    private Matrix4f calcModelMatrix() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(posGL.x, posGL.y, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = giveRelativeWidth();
-        float sy = giveRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
+    /**
+     * Deletes vertex buffer of this animation. Requires current GL context.
+     *
+     * @param gl20 GL2 binding
+     */
+    @Override
+    public void release(GL2 gl20) {
+        if (vbo != 0) {
+            gl20.glDeleteBuffers(1, GLBuffers.newDirectIntBuffer(new int[]{vbo}));
+            vbo = 0;
+        }
+        buffered = false;
+    }
 
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
+    // model matrix and GL area are computed again only when something has changed
+    private ModelTransform transform() {
+        return transform.update(pos, giveRelativeWidth(), giveRelativeHeight(), GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
     }
 
     /**
@@ -227,6 +299,11 @@ public class Animation implements GLComponent {
     @Override
     public void render(GL2 gl20, Matrix4f projMat4, ShaderProgram program) {
         if (enabled && buffered) {
+            final int frameNum = getFrame();
+            final boolean strip = isStrip();
+            // strip is drawn with UVs of the first frame, shader steps to the current one
+            final Texture frame = strip ? texture[0] : texture[frameNum];
+            updateUVs(gl20, frame);
             program.bind(gl20);
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, ibo);
@@ -238,14 +315,22 @@ public class Animation implements GLComponent {
             program.bindAttribute(gl20, 0, "pos");
             program.bindAttribute(gl20, 1, "uv");
 
-            Matrix4f modelMat4 = calcModelMatrix();
+            Matrix4f modelMat4 = transform().getModelMatrix();
             program.updateUniform(gl20, projMat4, "projectionMatrix");
             program.updateUniform(gl20, modelMat4, "modelMatrix");
             program.updateUniform(gl20, color, "color");
+            if (strip) {
+                program.updateUniform(gl20, (float) frameNum, "frame");
+                program.updateUniform(gl20, frameGrid, "frameGrid");
+            }
 
-            texture[getFrame()].bind(gl20, 0, program, "colorMap");
+            frame.bind(gl20, 0, program, "colorMap");
             gl20.glDrawElements(GL2.GL_TRIANGLES, INDICES.length, GL2.GL_UNSIGNED_INT, 0);
             Texture.unbind(gl20, 0);
+            if (strip) {
+                // programs are shared, other components are not strips
+                program.updateUniform(gl20, NO_FRAME_GRID, "frameGrid");
+            }
 
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
@@ -256,20 +341,6 @@ public class Animation implements GLComponent {
         }
     }
 
-    private Matrix4f calcModelMatrix(float xinc, float ydec) {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(posGL.x + xinc, posGL.y + ydec, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = giveRelativeWidth();
-        float sy = giveRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
-
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
-    }
-
     /**
      * Render font
      *
@@ -282,6 +353,8 @@ public class Animation implements GLComponent {
      */
     public void render(GL2 gl20, float xinc, float ydec, Matrix4f projMat4, ShaderProgram fntProgram, ShaderProgram prmProgram) { // used for fonts
         if (enabled && buffered) {
+            final Texture frame = texture[getFrame()];
+            updateUVs(gl20, frame);
             fntProgram.bind(gl20);
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, ibo);
@@ -293,12 +366,12 @@ public class Animation implements GLComponent {
             fntProgram.bindAttribute(gl20, 0, "pos");
             fntProgram.bindAttribute(gl20, 1, "uv");
 
-            Matrix4f modelMat4 = calcModelMatrix(xinc, ydec);
+            Matrix4f modelMat4 = transform().getModelMatrix(xinc, ydec);
             fntProgram.updateUniform(gl20, projMat4, "projectionMatrix");
             fntProgram.updateUniform(gl20, modelMat4, "modelMatrix");
             fntProgram.updateUniform(gl20, color, "color");
 
-            texture[getFrame()].bind(gl20, 0, fntProgram, "colorMap");
+            frame.bind(gl20, 0, fntProgram, "colorMap");
             gl20.glDrawElements(GL2.GL_TRIANGLES, INDICES.length, GL2.GL_UNSIGNED_INT, 0);
             Texture.unbind(gl20, 0);
 
@@ -311,6 +384,16 @@ public class Animation implements GLComponent {
         }
     }
 
+    @Override
+    public boolean isIndexed() {
+        return texture.length > 0 && texture[0].isIndexed();
+    }
+
+    @Override
+    public Texture getCurrentTexture() {
+        return texture[getFrame()];
+    }
+
     @Override
     public Type getType() {
         return type;
@@ -385,11 +468,7 @@ public class Animation implements GLComponent {
 
     @Override
     public Rectanglef getGLArea() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        float rw = getRelativeWidth();
-        float rh = getRelativeHeight();
-        Rectanglef rect = new Rectanglef(posGL.x - rw, posGL.y - rh, posGL.x + rw, posGL.y + rh);
-        return rect;
+        return transform().getGLArea();
     }
 
     @Override
@@ -432,6 +511,7 @@ public class Animation implements GLComponent {
 
     public void setTexture(Texture[] texture) {
         this.texture = texture;
+        initFrameGrid();
     }
 
     public float getScale() {
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.TraceGL2;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts GL calls (debug mode). GL binding is wrapped into JOGL trace pipeline
+ * which prints every call, the stream given to it discards the text and counts
+ * the calls (trace ends each call with one println).
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class GLCallCounter {
+
+    private static final long SECOND = 1000000000L; // in nanoseconds
+
+    private static final Map<GL2, GL2> PIPELINES = new IdentityHashMap<>();
+
+    private static final AtomicLong CALLS = new AtomicLong();
+
+    private static final PrintStream COUNTING_STREAM = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }) {
+        @Override
+        public void print(String s) {
+        }
+
+        @Override
+        public void println(String s) {
+            CALLS.incrementAndGet();
+        }
+    };
+    private static long frames = 0L;
+
+    private static long sampleTime = System.nanoTime();
+    private static long sampleCalls = 0L;
+    private static long sampleFrames = 0L;
+    private static long callsPerFrame = 0L;
+
+    /**
+     * Wraps GL binding into the counting one (the same wrapper for the same
+     * binding)
+     *
+     * @param gl20 GL2 binding
+     * @return counting GL2 binding
+     */
+    public static synchronized GL2 wrap(GL2 gl20) {
+        return PIPELINES.computeIfAbsent(gl20, gl -> new TraceGL2(gl, COUNTING_STREAM));
+    }
+
+    /**
+     * Marks end of the frame
+     */
+    public static synchronized void endFrame() {
+        frames++;
+    }
+
+    /**
+     * Takes new sample of GL calls per frame if at least one second has
+     * passed since the last one
+     *
+     * @return whether new sample has been taken
+     */
+    public static synchronized boolean sample() {
+        final long now = System.nanoTime();
+        if (now - sampleTime >= SECOND) {
+            final long calls = CALLS.get();
+            final long frameCount = frames - sampleFrames;
+            callsPerFrame = (frameCount > 0) ? (calls - sampleCalls) / frameCount : 0L;
+            sampleCalls = calls;
+            sampleFrames = frames;
+            sampleTime = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets GL calls per frame of the last sample
+     *
+     * @return average GL calls per frame
+     */
+    public static synchronized long getCallsPerFrame() {
+        return callsPerFrame;
+    }
+
+    /**
+     * Gets GL calls report
+     *
+     * @return GL calls report
+     */
+    public static String getReport() {
+        return String.format("GL calls: %d per frame, total %d", getCallsPerFrame(), CALLS.get());
+    }
+
+}
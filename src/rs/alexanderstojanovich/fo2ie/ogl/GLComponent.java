@@ -155,6 +155,14 @@ public interface GLComponent {
      */
     public void buffer(GL2 gl20);
 
+    /**
+     * Deletes buffers of this component (it can be buffered again). Requires
+     * current GL context.
+     *
+     * @param gl20 GL2 binding
+     */
+    public void release(GL2 gl20);
+
     /**
      * Render this component
      *
@@ -164,6 +172,22 @@ public interface GLComponent {
      */
     public void render(GL2 gl20, Matrix4f projMat4, ShaderProgram program);
 
+    /**
+     * Whether this component is textured with palette-indexed texture(s). Such
+     * component must be rendered with palette (lookup) shader program.
+     *
+     * @return is texture palette-indexed
+     */
+    public boolean isIndexed();
+
+    /**
+     * Gets texture this component is currently drawn with (current frame of
+     * the animation)
+     *
+     * @return current texture
+     */
+    public Texture getCurrentTexture();
+
     /**
      * Gets Type of the GLComponent
      *
@@ -195,7 +219,8 @@ public interface GLComponent {
     /**
      * Gets rectangular pixel surface GL area of component
      *
-     * @return pixel rectangular GL surface
+     * @return pixel rectangular GL surface (kept by the component, not to be
+     * modified)
      */
     public Rectanglef getGLArea();
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import org.joml.Matrix4f;
+import org.joml.Rectanglef;
+import org.joml.Vector2f;
+import rs.alexanderstojanovich.fo2ie.util.GLCoords;
+
+/**
+ * Model transform of the component (translation and scale). Model matrix and
+ * GL area are kept and computed again only when position, relative size or
+ * canvas size has changed, so rendering does not allocate.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+class ModelTransform {
+
+    private final boolean scaled;
+
+    private final Vector2f posGL = new Vector2f();
+    private final Matrix4f modelMatrix = new Matrix4f();
+    private final Matrix4f offsetMatrix = new Matrix4f();
+    private final Rectanglef glArea = new Rectanglef();
+
+    // input of the last computation
+    private boolean valid = false;
+    private float x;
+    private float y;
+    private float relWidth;
+    private float relHeight;
+    private int canvasWidth;
+    private int canvasHeight;
+
+    /**
+     * Creates new model transform
+     *
+     * @param scaled is model scaled to the relative size (quads) or only
+     * translated (text which vertices are already in the GL units)
+     */
+    ModelTransform(boolean scaled) {
+        this.scaled = scaled;
+    }
+
+    /**
+     * Computes model matrix and GL area if any input has changed
+     *
+     * @param pos position of the center (screen coordinates)
+     * @param relWidth relative (half) width
+     * @param relHeight relative (half) height
+     * @param canvasWidth canvas width
+     * @param canvasHeight canvas height
+     * @return this transform
+     */
+    ModelTransform update(Vector2f pos, float relWidth, float relHeight, int canvasWidth, int canvasHeight) {
+        if (valid && pos.x == x && pos.y == y
+                && relWidth == this.relWidth && relHeight == this.relHeight
+                && canvasWidth == this.canvasWidth && canvasHeight == this.canvasHeight) {
+            return this;
+        }
+        this.x = pos.x;
+        this.y = pos.y;
+        this.relWidth = relWidth;
+        this.relHeight = relHeight;
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+
+        GLCoords.getOpenGLCoordinates(pos, canvasWidth, canvasHeight, posGL);
+        modelMatrix.translation(posGL.x, posGL.y, 0.0f);
+        if (scaled) {
+            modelMatrix.scale(relWidth, relHeight, 1.0f);
+        }
+        glArea.minX = posGL.x - relWidth;
+        glArea.minY = posGL.y - relHeight;
+        glArea.maxX = posGL.x + relWidth;
+        glArea.maxY = posGL.y + relHeight;
+        valid = true;
+
+        return this;
+    }
+
+    /**
+     * Gets model matrix (of the last update)
+     *
+     * @return model matrix (not to be modified)
+     */
+    Matrix4f getModelMatrix() {
+        return modelMatrix;
+    }
+
+    /**
+     * Gets model matrix moved by the offset (font glyphs)
+     *
+     * @param xinc x-advance
+     * @param ydec y-drop
+     * @return moved model matrix (valid until next call)
+     */
+    Matrix4f getModelMatrix(float xinc, float ydec) {
+        offsetMatrix.translation(posGL.x + xinc, posGL.y + ydec, 0.0f);
+        if (scaled) {
+            offsetMatrix.scale(relWidth, relHeight, 1.0f);
+        }
+        return offsetMatrix;
+    }
+
+    /**
+     * Gets GL area (of the last update)
+     *
+     * @return GL area (not to be modified)
+     */
+    Rectanglef getGLArea() {
+        return glArea;
+    }
+
+}
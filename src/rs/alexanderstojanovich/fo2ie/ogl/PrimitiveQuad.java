@@ -26,7 +26,6 @@ import org.joml.Rectanglef;
 import org.joml.Vector2f;
 import org.joml.Vector4f;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
-import rs.alexanderstojanovich.fo2ie.util.GLCoords;
 
 /**
  *
@@ -56,6 +55,8 @@ public class PrimitiveQuad { // text overlay (quad without texture)
 
     private boolean buffered = false;
 
+    private final ModelTransform transform = new ModelTransform(true);
+
     static {
         VERTICES[0] = new Vector2f(-1.0f, -1.0f);
         VERTICES[1] = new Vector2f(1.0f, -1.0f);
@@ -109,9 +110,10 @@ public class PrimitiveQuad { // text overlay (quad without texture)
         } else {
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
 
-            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, 0, fb);
+            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, 0, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, fb);
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
         }
+        UploadStats.add(VERTEX_COUNT * VERTEX_SIZE * Float.BYTES);
         //----------------------------------------------------------------------
         if (ibo == 0) {
             IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
@@ -122,23 +124,28 @@ public class PrimitiveQuad { // text overlay (quad without texture)
 
             gl20.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, INDICES.length * Integer.BYTES, CONST_INT_BUFFER, GL2.GL_STATIC_DRAW);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+            UploadStats.add(INDICES.length * Integer.BYTES);
         }
         //----------------------------------------------------------------------
         buffered = true;
     }
 
-    private Matrix4f calcModelMatrix() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(posGL.x, posGL.y, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = getRelativeWidth();
-        float sy = getRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
+    /**
+     * Deletes vertex buffer of this quad. Requires current GL context.
+     *
+     * @param gl20 GL2 binding
+     */
+    public void release(GL2 gl20) {
+        if (vbo != 0) {
+            gl20.glDeleteBuffers(1, GLBuffers.newDirectIntBuffer(new int[]{vbo}));
+            vbo = 0;
+        }
+        buffered = false;
+    }
 
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
+    // model matrix and GL area are computed again only when something has changed
+    private ModelTransform transform() {
+        return transform.update(pos, getRelativeWidth(), getRelativeHeight(), GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
     }
 
     /**
@@ -158,7 +165,7 @@ public class PrimitiveQuad { // text overlay (quad without texture)
             gl20.glVertexAttribPointer(0, 2, GL2.GL_FLOAT, false, VERTEX_SIZE * Float.BYTES, 0); // this is for font pos
             program.bindAttribute(gl20, 0, "pos");
 
-            Matrix4f modelMat4 = calcModelMatrix();
+            Matrix4f modelMat4 = transform().getModelMatrix();
             program.updateUniform(gl20, projMat4, "projectionMatrix");
             program.updateUniform(gl20, modelMat4, "modelMatrix");
             program.updateUniform(gl20, color, "color");
@@ -222,11 +229,7 @@ public class PrimitiveQuad { // text overlay (quad without texture)
     }
 
     public Rectanglef getGLArea() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        float rw = getRelativeWidth();
-        float rh = getRelativeHeight();
-        Rectanglef rect = new Rectanglef(posGL.x - rw, posGL.y - rh, posGL.x + rw, posGL.y + rh);
-        return rect;
+        return transform().getGLArea();
     }
 
     public Rectanglef getPixelArea() {
@@ -30,7 +30,6 @@ import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
 import rs.alexanderstojanovich.fo2ie.main.GameTime;
 import rs.alexanderstojanovich.fo2ie.util.GLColor;
-import rs.alexanderstojanovich.fo2ie.util.GLCoords;
 import rs.alexanderstojanovich.fo2ie.util.UniqueIdUtils;
 
 /**
@@ -74,6 +73,8 @@ public class Quad implements GLComponent {
 
     private boolean buffered = false;
 
+    private final ModelTransform transform = new ModelTransform(true);
+
     private final String uniqueId;
 
     static {
@@ -134,10 +135,16 @@ public class Quad implements GLComponent {
     }
 
     private void initUVs() {
-        uvs[0] = new Vector2f(0.0f, 1.0f); // (-1.0f, -1.0f)
-        uvs[1] = new Vector2f(1.0f, 1.0f); // (1.0f, -1.0f)
-        uvs[2] = new Vector2f(1.0f, 0.0f); // (1.0f, 1.0f)
-        uvs[3] = new Vector2f(0.0f, 0.0f); // (-1.0f, 1.0f)
+        // image takes the top left part of the texture (if texture is padded)
+        // or its packed region (if texture is region of an atlas page)
+        final float minU = texture.getMinU();
+        final float minV = texture.getMinV();
+        final float maxU = texture.getMaxU();
+        final float maxV = texture.getMaxV();
+        uvs[0] = new Vector2f(minU, maxV); // (-1.0f, -1.0f)
+        uvs[1] = new Vector2f(maxU, maxV); // (1.0f, -1.0f)
+        uvs[2] = new Vector2f(maxU, minV); // (1.0f, 1.0f)
+        uvs[3] = new Vector2f(minU, minV); // (-1.0f, 1.0f)
     }
 
     @Override
@@ -172,9 +179,10 @@ public class Quad implements GLComponent {
         } else {
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
 
-            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, 0, fb);
+            gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, 0, VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, fb);
             gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
         }
+        UploadStats.add(VERTEX_COUNT * VERTEX_SIZE * Float.BYTES);
         //----------------------------------------------------------------------
         if (ibo == 0) {
             IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
@@ -185,23 +193,29 @@ public class Quad implements GLComponent {
 
             gl20.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, INDICES.length * Integer.BYTES, CONST_INT_BUFFER, GL2.GL_STATIC_DRAW);
             gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+            UploadStats.add(INDICES.length * Integer.BYTES);
         }
         //----------------------------------------------------------------------
         buffered = true;
     }
 
-    private Matrix4f calcModelMatrix() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(posGL.x, posGL.y, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = giveRelativeWidth();
-        float sy = giveRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
+    /**
+     * Deletes vertex buffer of this quad. Requires current GL context.
+     *
+     * @param gl20 GL2 binding
+     */
+    @Override
+    public void release(GL2 gl20) {
+        if (vbo != 0) {
+            gl20.glDeleteBuffers(1, GLBuffers.newDirectIntBuffer(new int[]{vbo}));
+            vbo = 0;
+        }
+        buffered = false;
+    }
 
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
+    // model matrix and GL area are computed again only when something has changed
+    private ModelTransform transform() {
+        return transform.update(pos, giveRelativeWidth(), giveRelativeHeight(), GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
     }
 
     /**
@@ -225,7 +239,7 @@ public class Quad implements GLComponent {
             program.bindAttribute(gl20, 0, "pos");
             program.bindAttribute(gl20, 1, "uv");
 
-            Matrix4f modelMat4 = calcModelMatrix();
+            Matrix4f modelMat4 = transform().getModelMatrix();
             program.updateUniform(gl20, projMat4, "projectionMatrix");
             program.updateUniform(gl20, modelMat4, "modelMatrix");
             program.updateUniform(gl20, color, "color");
@@ -247,20 +261,6 @@ public class Quad implements GLComponent {
         }
     }
 
-    private Matrix4f calcModelMatrix(float xinc, float ydec) {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        Matrix4f translationMatrix = new Matrix4f().setTranslation(posGL.x + xinc, posGL.y + ydec, 0.0f);
-        Matrix4f rotationMatrix = new Matrix4f().identity();
-
-        float sx = giveRelativeWidth();
-        float sy = giveRelativeHeight();
-        Matrix4f scaleMatrix = new Matrix4f().scaleXY(sx, sy);
-
-        Matrix4f temp = new Matrix4f();
-        Matrix4f modelMatrix = translationMatrix.mul(rotationMatrix.mul(scaleMatrix, temp), temp);
-        return modelMatrix;
-    }
-
     /**
      * Render font
      *
@@ -283,7 +283,7 @@ public class Quad implements GLComponent {
             fntProgram.bindAttribute(gl20, 0, "pos");
             fntProgram.bindAttribute(gl20, 1, "uv");
 
-            Matrix4f modelMat4 = calcModelMatrix(xinc, ydec);
+            Matrix4f modelMat4 = transform().getModelMatrix(xinc, ydec);
             fntProgram.updateUniform(gl20, projMat4, "projectionMatrix");
             fntProgram.updateUniform(gl20, modelMat4, "modelMatrix");
             fntProgram.updateUniform(gl20, color, "color");
@@ -305,6 +305,16 @@ public class Quad implements GLComponent {
         }
     }
 
+    @Override
+    public boolean isIndexed() {
+        return texture.isIndexed();
+    }
+
+    @Override
+    public Texture getCurrentTexture() {
+        return texture;
+    }
+
     @Override
     public Type getType() {
         return type;
@@ -379,11 +389,7 @@ public class Quad implements GLComponent {
 
     @Override
     public Rectanglef getGLArea() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        float rw = getRelativeWidth();
-        float rh = getRelativeHeight();
-        Rectanglef rect = new Rectanglef(posGL.x - rw, posGL.y - rh, posGL.x + rw, posGL.y + rh);
-        return rect;
+        return transform().getGLArea();
     }
 
     @Override
@@ -421,6 +427,8 @@ public class Quad implements GLComponent {
 
     public void setTexture(Texture texture) {
         this.texture = texture;
+        initUVs();
+        this.buffered = false;
     }
 
     public float getScale() {
@@ -21,6 +21,10 @@ import com.jogamp.opengl.util.GLBuffers;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
@@ -37,6 +41,20 @@ public class ShaderProgram {
     private final Shader vertex;
     private final Shader fragment;
 
+    // attribute locations every component uses (bound before linking)
+    public static final int POS_ATTRIBUTE = 0;
+    public static final int UV_ATTRIBUTE = 1;
+
+    private static final int MAX_NAME_LENGTH = 256;
+
+    // active uniforms and attributes of the linked program (name -> location)
+    private final Map<String, Integer> uniforms = new HashMap<>();
+    private final Map<String, Integer> attributes = new HashMap<>();
+    // last value set for the uniform location (unchanged values are not set again)
+    private final Map<Integer, Object> shadow = new HashMap<>();
+
+    private final FloatBuffer matBuffer = GLBuffers.newDirectFloatBuffer(4 * 4);
+
     public ShaderProgram(GL2 gl20, Shader vertex, Shader fragment) {
         this.programId = gl20.glCreateProgram();
         this.vertex = vertex;
@@ -83,16 +101,54 @@ public class ShaderProgram {
         }
     }
 
+    // reads active uniforms and attributes of the linked program
+    private void introspect(GL2 gl20) {
+        IntBuffer count = GLBuffers.newDirectIntBuffer(1);
+        IntBuffer length = GLBuffers.newDirectIntBuffer(1);
+        IntBuffer size = GLBuffers.newDirectIntBuffer(1);
+        IntBuffer type = GLBuffers.newDirectIntBuffer(1);
+        ByteBuffer name = GLBuffers.newDirectByteBuffer(MAX_NAME_LENGTH);
+
+        gl20.glGetProgramiv(programId, GL2.GL_ACTIVE_UNIFORMS, count);
+        for (int i = 0; i < count.get(0); i++) {
+            gl20.glGetActiveUniform(programId, i, MAX_NAME_LENGTH, length, size, type, name);
+            String uniformName = readName(name, length.get(0));
+            uniforms.put(uniformName, gl20.glGetUniformLocation(programId, uniformName));
+        }
+
+        gl20.glGetProgramiv(programId, GL2.GL_ACTIVE_ATTRIBUTES, count);
+        for (int i = 0; i < count.get(0); i++) {
+            gl20.glGetActiveAttrib(programId, i, MAX_NAME_LENGTH, length, size, type, name);
+            String attributeName = readName(name, length.get(0));
+            attributes.put(attributeName, gl20.glGetAttribLocation(programId, attributeName));
+        }
+    }
+
+    // name of the active variable (arrays are reported as "name[0]")
+    private static String readName(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.rewind();
+        buffer.get(bytes);
+        String name = new String(bytes, StandardCharsets.US_ASCII);
+        return name.endsWith("[0]") ? name.substring(0, name.length() - 3) : name;
+    }
+
     // method of do all together
     private void initProgram(GL2 gl20) {
         // attaching all the shaders        
         attachShader(gl20, vertex);
         attachShader(gl20, fragment);
 
+        // attribute locations must be bound before linking
+        gl20.glBindAttribLocation(programId, POS_ATTRIBUTE, "pos");
+        gl20.glBindAttribLocation(programId, UV_ATTRIBUTE, "uv");
+
         // linking program
         linkProgram(gl20);
         // validating program
         validateProgram(gl20);
+        // caching locations
+        introspect(gl20);
     }
 
     public void bind(GL2 gl20) {
@@ -103,40 +159,127 @@ public class ShaderProgram {
         gl20.glUseProgram(0);
     }
 
+    /**
+     * Binds attribute location. Location of the linked program does not
+     * change until program is linked again, so binding to the location
+     * attribute already has is skipped.
+     *
+     * @param gl20 GL2 binding
+     * @param attribute attribute location
+     * @param variableName attribute name
+     */
     public void bindAttribute(GL2 gl20, int attribute, String variableName) {
-        gl20.glBindAttribLocation(programId, attribute, variableName);
+        Integer location = attributes.get(variableName);
+        if (location == null || location != attribute) {
+            gl20.glBindAttribLocation(programId, attribute, variableName);
+        }
+    }
+
+    /**
+     * Gets location of the active uniform
+     *
+     * @param name uniform name
+     * @return uniform location or -1 if there is no such active uniform
+     */
+    public int getUniformLocation(String name) {
+        Integer location = uniforms.get(name);
+        return (location != null) ? location : -1;
+    }
+
+    /**
+     * Gets location of the active attribute
+     *
+     * @param name attribute name
+     * @return attribute location or -1 if there is no such active attribute
+     */
+    public int getAttributeLocation(String name) {
+        Integer location = attributes.get(name);
+        return (location != null) ? location : -1;
     }
 
+    // Uniforms are set on the bound program (this one). Values are kept per
+    // location, so setting the value the uniform already has is skipped.
+    // Kept values are updated in place (scalars in one element arrays), so
+    // setting uniforms does not allocate.
     public void updateUniform(GL2 gl20, int value, String name) {
-        int uniformLocation = gl20.glGetUniformLocation(programId, name);
-        gl20.glUniform1i(uniformLocation, value);
+        int uniformLocation = getUniformLocation(name);
+        Object shadowed = shadow.get(uniformLocation);
+        if (uniformLocation != -1 && !(shadowed instanceof int[] && ((int[]) shadowed)[0] == value)) {
+            gl20.glUniform1i(uniformLocation, value);
+            if (shadowed instanceof int[]) {
+                ((int[]) shadowed)[0] = value;
+            } else {
+                shadow.put(uniformLocation, new int[]{value});
+            }
+        }
     }
 
     public void updateUniform(GL2 gl20, float value, String name) {
-        int uniformLocation = gl20.glGetUniformLocation(programId, name);
-        gl20.glUniform1f(uniformLocation, value);
+        int uniformLocation = getUniformLocation(name);
+        Object shadowed = shadow.get(uniformLocation);
+        if (uniformLocation != -1 && !(shadowed instanceof float[]
+                && Float.floatToIntBits(((float[]) shadowed)[0]) == Float.floatToIntBits(value))) {
+            gl20.glUniform1f(uniformLocation, value);
+            if (shadowed instanceof float[]) {
+                ((float[]) shadowed)[0] = value;
+            } else {
+                shadow.put(uniformLocation, new float[]{value});
+            }
+        }
     }
 
     public void updateUniform(GL2 gl20, Vector2f vect, String name) {
-        int uniformLocation = gl20.glGetUniformLocation(programId, name);
-        gl20.glUniform2f(uniformLocation, vect.x, vect.y);
+        int uniformLocation = getUniformLocation(name);
+        Object value = shadow.get(uniformLocation);
+        if (uniformLocation != -1 && !vect.equals(value)) {
+            gl20.glUniform2f(uniformLocation, vect.x, vect.y);
+            if (value instanceof Vector2f) {
+                ((Vector2f) value).set(vect);
+            } else {
+                shadow.put(uniformLocation, new Vector2f(vect));
+            }
+        }
     }
 
     public void updateUniform(GL2 gl20, Vector3f vect, String name) {
-        int uniformLocation = gl20.glGetUniformLocation(programId, name);
-        gl20.glUniform3f(uniformLocation, vect.x, vect.y, vect.z);
+        int uniformLocation = getUniformLocation(name);
+        Object value = shadow.get(uniformLocation);
+        if (uniformLocation != -1 && !vect.equals(value)) {
+            gl20.glUniform3f(uniformLocation, vect.x, vect.y, vect.z);
+            if (value instanceof Vector3f) {
+                ((Vector3f) value).set(vect);
+            } else {
+                shadow.put(uniformLocation, new Vector3f(vect));
+            }
+        }
     }
 
     public void updateUniform(GL2 gl20, Vector4f vect, String name) {
-        int uniformLocation = gl20.glGetUniformLocation(programId, name);
-        gl20.glUniform4f(uniformLocation, vect.x, vect.y, vect.z, vect.w);
+        int uniformLocation = getUniformLocation(name);
+        Object value = shadow.get(uniformLocation);
+        if (uniformLocation != -1 && !vect.equals(value)) {
+            gl20.glUniform4f(uniformLocation, vect.x, vect.y, vect.z, vect.w);
+            if (value instanceof Vector4f) {
+                ((Vector4f) value).set(vect);
+            } else {
+                shadow.put(uniformLocation, new Vector4f(vect));
+            }
+        }
     }
 
     public void updateUniform(GL2 gl20, Matrix4f mat, String name) {
-        FloatBuffer fb = GLBuffers.newDirectFloatBuffer(4 * 4);
-        mat.get(fb);
-        int uniformLocation = gl20.glGetUniformLocation(programId, name);
-        gl20.glUniformMatrix4fv(uniformLocation, 1, false, fb);
+        int uniformLocation = getUniformLocation(name);
+        Object value = shadow.get(uniformLocation);
+        if (uniformLocation != -1 && !mat.equals(value)) {
+            matBuffer.clear();
+            mat.get(matBuffer);
+            gl20.glUniformMatrix4fv(uniformLocation, 1, false, matBuffer);
+            if (value instanceof Matrix4f) {
+                ((Matrix4f) value).set(mat);
+            } else {
+                shadow.put(uniformLocation, new Matrix4f(mat));
+            }
+        }
     }
 
     public int getProgramId() {
@@ -151,4 +294,12 @@ public class ShaderProgram {
         return fragment;
     }
 
+    public Map<String, Integer> getUniforms() {
+        return Collections.unmodifiableMap(uniforms);
+    }
+
+    public Map<String, Integer> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
 }
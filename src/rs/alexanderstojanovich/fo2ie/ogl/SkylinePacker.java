@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Skyline (bottom left) rectangle packer. Rectangles are placed as they come
+ * on the lowest position of the skyline (top edge of the packed area) they
+ * fit.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+class SkylinePacker {
+
+    private final int width;
+    private final int height;
+
+    // skyline segments from left to right, together they span whole width
+    private final List<Segment> skyline = new ArrayList<>();
+
+    private long usedArea = 0L;
+
+    private static class Segment {
+
+        int x;
+        int y;
+        int width;
+
+        Segment(int x, int y, int width) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+        }
+    }
+
+    SkylinePacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        skyline.add(new Segment(0, 0, width));
+    }
+
+    /**
+     * Packs the rectangle
+     *
+     * @param w rectangle width
+     * @param h rectangle height
+     * @return top left corner of the packed rectangle or null if it does not
+     * fit
+     */
+    Point insert(int w, int h) {
+        int bestIndex = -1;
+        int bestY = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int i = 0; i < skyline.size(); i++) {
+            int y = fit(i, w, h);
+            if (y >= 0) {
+                Segment segment = skyline.get(i);
+                // lowest position first, then the narrowest segment
+                if (y < bestY || (y == bestY && segment.width < bestWidth)) {
+                    bestIndex = i;
+                    bestY = y;
+                    bestWidth = segment.width;
+                }
+            }
+        }
+
+        if (bestIndex < 0) {
+            return null;
+        }
+
+        final int x = skyline.get(bestIndex).x;
+        raise(bestIndex, x, bestY + h, w);
+        usedArea += (long) w * h;
+
+        return new Point(x, bestY);
+    }
+
+    // y where rectangle fits starting at the segment or -1 if it does not fit
+    private int fit(int index, int w, int h) {
+        final int x = skyline.get(index).x;
+        if (x + w > width) {
+            return -1;
+        }
+        int y = 0;
+        int remaining = w;
+        for (int i = index; remaining > 0; i++) {
+            Segment segment = skyline.get(i);
+            y = Math.max(y, segment.y);
+            if (y + h > height) {
+                return -1;
+            }
+            remaining -= segment.width;
+        }
+        return y;
+    }
+
+    // puts new segment on top of the packed rectangle, shrinking those below it
+    private void raise(int index, int x, int y, int w) {
+        skyline.add(index, new Segment(x, y, w));
+        final int right = x + w;
+        int i = index + 1;
+        while (i < skyline.size()) {
+            Segment segment = skyline.get(i);
+            if (segment.x >= right) {
+                break;
+            }
+            int shrink = right - segment.x;
+            if (segment.width <= shrink) {
+                skyline.remove(i);
+            } else {
+                segment.x += shrink;
+                segment.width -= shrink;
+                break;
+            }
+        }
+        // merge neighbours of the same height
+        i = 0;
+        while (i < skyline.size() - 1) {
+            Segment a = skyline.get(i);
+            Segment b = skyline.get(i + 1);
+            if (a.y == b.y) {
+                a.width += b.width;
+                skyline.remove(i + 1);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Gets fraction of the area taken by the packed rectangles
+     *
+     * @return occupancy (0 to 1)
+     */
+    float getOccupancy() {
+        return usedArea / (float) ((long) width * height);
+    }
+
+}
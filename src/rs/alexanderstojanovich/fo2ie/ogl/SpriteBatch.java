@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.util.GLBuffers;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.joml.Matrix4f;
+import org.joml.Rectanglef;
+import org.joml.Vector4f;
+
+/**
+ * Sprite batch. Renders textured components (pictures, animations,
+ * addressable quads) from one streaming vertex buffer. Vertices are
+ * pre-transformed (model matrix is identity) and consecutive sprites drawn
+ * with the same shader program, texture (atlas page) and color are flushed in
+ * one draw call. Order of the components is kept (overlapping pictures).
+ * Sprites which texture is still being uploaded are drawn with the
+ * placeholder texture.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class SpriteBatch {
+
+    public static final int VERTEX_SIZE = 4; // pos (2) + uv (2)
+    public static final int VERTEX_COUNT = 4;
+    private static final int[] QUAD_INDICES = {0, 1, 2, 2, 3, 0};
+
+    private static final Matrix4f IDENTITY = new Matrix4f().identity();
+
+    private int vbo = 0;
+    private int ibo = 0;
+    // number of sprites vertex and index buffer can hold
+    private int capacity = 0;
+    private FloatBuffer fb = GLBuffers.newDirectFloatBuffer(0);
+    // textures of the enabled sprites (animation frame is taken once per render)
+    private GLComponent[] drawn = new GLComponent[0];
+    private Texture[] textures = new Texture[0];
+    // drawn instead of the textures not uploaded yet (question mark)
+    private Texture placeholder;
+
+    // statistics of the last render
+    private int spriteCount = 0;
+    private int drawCalls = 0;
+
+    /**
+     * Renders enabled sprites in given order. Requires current GL context.
+     *
+     * @param gl20 GL2 binding
+     * @param projMat4 projection matrix
+     * @param sprites sprites to render
+     * @param imgSP image shader program
+     * @param palSP image shader program for palette-indexed textures
+     */
+    public void render(GL2 gl20, Matrix4f projMat4, List<GLComponent> sprites, ShaderProgram imgSP, ShaderProgram palSP) {
+        spriteCount = 0;
+        drawCalls = 0;
+        ensureCapacity(gl20, sprites.size());
+
+        // write vertices of all the enabled sprites
+        fb.clear();
+        for (GLComponent sprite : sprites) {
+            if (sprite.isEnabled()) {
+                drawn[spriteCount] = sprite;
+                final Texture texture = sprite.getCurrentTexture();
+                textures[spriteCount] = (texture.isUploaded() || placeholder == null) ? texture : placeholder;
+                putSprite(sprite.getGLArea(), textures[spriteCount]);
+                spriteCount++;
+            }
+        }
+        fb.flip();
+        if (spriteCount == 0) {
+            return;
+        }
+
+        gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
+        // orphan previous contents (driver does not wait for the last frame)
+        gl20.glBufferData(GL2.GL_ARRAY_BUFFER, (long) capacity * VERTEX_COUNT * VERTEX_SIZE * Float.BYTES, null, GL2.GL_STREAM_DRAW);
+        gl20.glBufferSubData(GL2.GL_ARRAY_BUFFER, 0, (long) fb.remaining() * Float.BYTES, fb);
+        UploadStats.add((long) fb.remaining() * Float.BYTES);
+        gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, ibo);
+
+        gl20.glEnableVertexAttribArray(0);
+        gl20.glEnableVertexAttribArray(1);
+        gl20.glVertexAttribPointer(0, 2, GL2.GL_FLOAT, false, VERTEX_SIZE * Float.BYTES, 0); // this is for pos
+        gl20.glVertexAttribPointer(1, 2, GL2.GL_FLOAT, false, VERTEX_SIZE * Float.BYTES, 8); // this is for uv
+
+        ShaderProgram program = null;
+        Texture texture = null;
+        Vector4f color = null;
+        int first = 0;
+        int count = 0;
+        for (int i = 0; i < spriteCount; i++) {
+            final GLComponent sprite = drawn[i];
+            final Texture tex = textures[i];
+            final ShaderProgram sp = tex.isIndexed() ? palSP : imgSP;
+            if (count > 0 && (sp != program || !sameTexture(tex, texture) || !Objects.equals(sprite.getColor(), color))) {
+                flush(gl20, first, count);
+                first += count;
+                count = 0;
+            }
+            if (sp != program) {
+                program = sp;
+                program.bind(gl20);
+                program.updateUniform(gl20, projMat4, "projectionMatrix");
+                program.updateUniform(gl20, IDENTITY, "modelMatrix");
+                texture = null;
+                color = null;
+            }
+            if (!sameTexture(tex, texture)) {
+                texture = tex;
+                texture.bind(gl20, 0, program, "colorMap");
+            }
+            if (!Objects.equals(sprite.getColor(), color)) {
+                color = sprite.getColor();
+                program.updateUniform(gl20, color, "color");
+            }
+            count++;
+        }
+        flush(gl20, first, count);
+        // do not hold on to the components
+        Arrays.fill(drawn, 0, spriteCount, null);
+        Arrays.fill(textures, 0, spriteCount, null);
+
+        Texture.unbind(gl20, 0);
+        Texture.unbind(gl20, 1);
+
+        gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+        gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+        gl20.glDisableVertexAttribArray(0);
+        gl20.glDisableVertexAttribArray(1);
+
+        ShaderProgram.unbind(gl20);
+    }
+
+    // regions of the same atlas page are the same texture for drawing
+    private static boolean sameTexture(Texture a, Texture b) {
+        return a != null && b != null && a.getTextureID() == b.getTextureID();
+    }
+
+    private void flush(GL2 gl20, int first, int count) {
+        if (count > 0) {
+            gl20.glDrawElements(GL2.GL_TRIANGLES, count * QUAD_INDICES.length, GL2.GL_UNSIGNED_INT,
+                    (long) first * QUAD_INDICES.length * Integer.BYTES);
+            drawCalls++;
+        }
+    }
+
+    // corners in the same order (and with the same texture coordinates) as in Quad
+    private void putSprite(Rectanglef area, Texture texture) {
+        final float minU = texture.getMinU();
+        final float minV = texture.getMinV();
+        final float maxU = texture.getMaxU();
+        final float maxV = texture.getMaxV();
+        fb.put(area.minX).put(area.minY).put(minU).put(maxV); // (-1.0f, -1.0f)
+        fb.put(area.maxX).put(area.minY).put(maxU).put(maxV); // (1.0f, -1.0f)
+        fb.put(area.maxX).put(area.maxY).put(maxU).put(minV); // (1.0f, 1.0f)
+        fb.put(area.minX).put(area.maxY).put(minU).put(minV); // (-1.0f, 1.0f)
+    }
+
+    // grows vertex and index buffer (doubling) to hold given number of sprites
+    private void ensureCapacity(GL2 gl20, int sprites) {
+        if (sprites <= capacity && vbo != 0) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, 64);
+        while (newCapacity < sprites) {
+            newCapacity *= 2;
+        }
+
+        if (vbo == 0) {
+            IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(2);
+            gl20.glGenBuffers(2, intBuffer);
+            vbo = intBuffer.get(0);
+            ibo = intBuffer.get(1);
+        }
+
+        IntBuffer indices = GLBuffers.newDirectIntBuffer(newCapacity * QUAD_INDICES.length);
+        for (int s = 0; s < newCapacity; s++) {
+            for (int index : QUAD_INDICES) {
+                indices.put(s * VERTEX_COUNT + index);
+            }
+        }
+        indices.flip();
+        gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, ibo);
+        gl20.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, (long) indices.remaining() * Integer.BYTES, indices, GL2.GL_STATIC_DRAW);
+        UploadStats.add((long) indices.remaining() * Integer.BYTES);
+        gl20.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        fb = GLBuffers.newDirectFloatBuffer(newCapacity * VERTEX_COUNT * VERTEX_SIZE);
+        drawn = new GLComponent[newCapacity];
+        textures = new Texture[newCapacity];
+        capacity = newCapacity;
+    }
+
+    /**
+     * Deletes buffers of this batch. Requires current GL context.
+     *
+     * @param gl20 GL2 binding
+     */
+    public void release(GL2 gl20) {
+        if (vbo != 0) {
+            gl20.glDeleteBuffers(2, GLBuffers.newDirectIntBuffer(new int[]{vbo, ibo}));
+            vbo = 0;
+            ibo = 0;
+            capacity = 0;
+        }
+    }
+
+    public Texture getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * Sets texture drawn instead of the textures which are not uploaded yet
+     *
+     * @param placeholder placeholder texture (question mark)
+     */
+    public void setPlaceholder(Texture placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * Gets number of sprites rendered by the last render
+     *
+     * @return sprite count
+     */
+    public int getSpriteCount() {
+        return spriteCount;
+    }
+
+    /**
+     * Gets number of draw calls issued by the last render
+     *
+     * @return draw call count
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+}
@@ -17,8 +17,9 @@
 package rs.alexanderstojanovich.fo2ie.ogl;
 
 import com.jogamp.opengl.GL2;
-import java.util.ArrayList;
-import java.util.List;
+import com.jogamp.opengl.util.GLBuffers;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.Objects;
 import org.joml.Matrix4f;
 import org.joml.Rectanglef;
@@ -27,9 +28,8 @@ import org.joml.Vector4f;
 import rs.alexanderstojanovich.fo2ie.feature.FeatureKey;
 import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
+import rs.alexanderstojanovich.fo2ie.main.GameTime;
 import rs.alexanderstojanovich.fo2ie.util.GLColor;
-import rs.alexanderstojanovich.fo2ie.util.GLCoords;
-import rs.alexanderstojanovich.fo2ie.util.Pair;
 import rs.alexanderstojanovich.fo2ie.util.UniqueIdUtils;
 
 /**
@@ -54,8 +54,16 @@ public class Text implements GLComponent {
     protected static final float CELL_SIZE = 1.0f / GRID_SIZE;
     public static final float LINE_SPACING = 1.5f;
 
-    private final List<Quad> quadList = new ArrayList<>();
-    private final List<Pair<Float, Float>> pairList = new ArrayList<>();
+    // all the glyphs (two triangles each) in one vertex buffer
+    public static final int VERTEX_SIZE = 4; // pos (2) + uv (2)
+    public static final int VERTICES_PER_GLYPH = 6;
+    private FloatBuffer fb = GLBuffers.newDirectFloatBuffer(0);
+    private int vbo = 0;
+    private int glyphCount = 0;
+
+    private final ModelTransform transform = new ModelTransform(false);
+
+    private final GameTime gameTime = GameTime.getInstance();
 
     protected boolean enabled;
 
@@ -126,15 +134,32 @@ public class Text implements GLComponent {
         this.enabled = true;
     }
 
+    /**
+     * Marks this text for re-layout. Text is laid out again on changes of its
+     * content, alignment, scale, texture and on canvas resize.
+     */
     @Override
     public void unbuffer() {
         this.overlay.unbuffer();
         buffered = false;
     }
 
-    private void init(GL2 gl20) {
-        quadList.clear();
-        pairList.clear();
+    // lays out glyph quads (relative to the text position) into the vertex buffer
+    private int layout() {
+        final int glyphs = content.length();
+        final int floats = glyphs * VERTICES_PER_GLYPH * VERTEX_SIZE;
+        if (fb.capacity() < floats) {
+            fb = GLBuffers.newDirectFloatBuffer(floats);
+        }
+        fb.clear();
+
+        // font image takes the top left part of the texture (if texture is padded)
+        final float cellSizeU = CELL_SIZE * texture.getMaxU();
+        final float cellSizeV = CELL_SIZE * texture.getMaxV();
+        final float rcw = getRelativeCharWidth();
+        final float rch = getRelativeCharHeight();
+
+        int count = 0;
         String[] lines = content.split("\n");
         for (int l = 0; l < lines.length; l++) {
             for (int i = 0; i < lines[l].length(); i++) {
@@ -142,48 +167,75 @@ public class Text implements GLComponent {
                 int k = i / 64;
                 int asciiCode = (int) (lines[l].charAt(i));
 
-                float cellU = (asciiCode % GRID_SIZE) * CELL_SIZE;
-                float cellV = (asciiCode / GRID_SIZE) * CELL_SIZE;
+                float cellU = (asciiCode % GRID_SIZE) * cellSizeU;
+                float cellV = (asciiCode / GRID_SIZE) * cellSizeV;
 
-                float xinc = (j - content.length() * alignment) * getRelativeCharWidth();
-                float ydec = (k - l * LINE_SPACING) * getRelativeCharHeight();
+                float xinc = (j - content.length() * alignment) * rcw;
+                float ydec = (k - l * LINE_SPACING) * rch;
 
-                pairList.add(new Pair<>(xinc, ydec));
-
-                // pass null feat key as it is only used for rendering charactters
-                Quad quad = new Quad(null, null, null, charWidth, charHeight, texture, pos);
-
-                quad.setColor(color);
-                quad.setScale(scale);
-
-                quad.getUvs()[0].x = cellU;
-                quad.getUvs()[0].y = cellV + CELL_SIZE;
+                // two triangles, corners and texture coordinates as in the Quad
+                putVertex(xinc - rcw, ydec - rch, cellU, cellV + cellSizeV);
+                putVertex(xinc + rcw, ydec - rch, cellU + cellSizeU, cellV + cellSizeV);
+                putVertex(xinc + rcw, ydec + rch, cellU + cellSizeU, cellV);
+                putVertex(xinc + rcw, ydec + rch, cellU + cellSizeU, cellV);
+                putVertex(xinc - rcw, ydec + rch, cellU, cellV);
+                putVertex(xinc - rcw, ydec - rch, cellU, cellV + cellSizeV);
+                count++;
+            }
+        }
+        fb.flip();
 
-                quad.getUvs()[1].x = cellU + CELL_SIZE;
-                quad.getUvs()[1].y = cellV + CELL_SIZE;
+        return count;
+    }
 
-                quad.getUvs()[2].x = cellU + CELL_SIZE;
-                quad.getUvs()[2].y = cellV;
+    private void putVertex(float x, float y, float u, float v) {
+        fb.put(x).put(y).put(u).put(v);
+    }
 
-                quad.getUvs()[3].x = cellU;
-                quad.getUvs()[3].y = cellV;
+    /**
+     * Buffer this text with green status for rendering. All the glyphs are
+     * in one vertex buffer.
+     *
+     * @param gl20 GL2 binding
+     */
+    @Override
+    public void buffer(GL2 gl20) {
+        glyphCount = layout();
+        if (vbo == 0) {
+            IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
+            gl20.glGenBuffers(1, intBuffer);
+            vbo = intBuffer.get(0);
+        }
+        gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
+        gl20.glBufferData(GL2.GL_ARRAY_BUFFER, (long) fb.remaining() * Float.BYTES, fb, GL2.GL_STATIC_DRAW);
+        gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+        UploadStats.add((long) fb.remaining() * Float.BYTES);
 
-                quad.buffer(gl20);
-                quadList.add(quad);
-            }
+        if (!overlay.isBuffered()) {
+            overlay.buffer(gl20);
         }
+        buffered = true;
     }
 
     /**
-     * Buffer this text with green status for rendering
+     * Deletes vertex buffer of this text (and of its overlay). Requires
+     * current GL context.
      *
      * @param gl20 GL2 binding
      */
     @Override
-    public void buffer(GL2 gl20) {
-        init(gl20);
-        overlay.buffer(gl20);
-        buffered = true;
+    public void release(GL2 gl20) {
+        if (vbo != 0) {
+            gl20.glDeleteBuffers(1, GLBuffers.newDirectIntBuffer(new int[]{vbo}));
+            vbo = 0;
+        }
+        overlay.release(gl20);
+        buffered = false;
+    }
+
+    // model matrix and GL area are computed again only when something has changed
+    private ModelTransform transform() {
+        return transform.update(pos, getRelativeWidth(), getRelativeHeight(), GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
     }
 
     /**
@@ -195,15 +247,34 @@ public class Text implements GLComponent {
      */
     @Override
     public void render(GL2 gl20, Matrix4f projMat4, ShaderProgram fntProgram) {
-        if (enabled && buffered) {
-            int index = 0;
-            for (Quad quad : quadList) {
-                Pair<Float, Float> pair = pairList.get(index);
-                float xinc = pair.getKey();
-                float ydec = pair.getValue();
-                quad.render(gl20, xinc, ydec, projMat4, fntProgram);
-                index++;
-            }
+        if (enabled && buffered && glyphCount > 0) {
+            fntProgram.bind(gl20);
+            gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
+
+            gl20.glEnableVertexAttribArray(0);
+            gl20.glEnableVertexAttribArray(1);
+            gl20.glVertexAttribPointer(0, 2, GL2.GL_FLOAT, false, VERTEX_SIZE * Float.BYTES, 0); // this is for font pos
+            gl20.glVertexAttribPointer(1, 2, GL2.GL_FLOAT, false, VERTEX_SIZE * Float.BYTES, 8); // this is for font uv
+            fntProgram.bindAttribute(gl20, 0, "pos");
+            fntProgram.bindAttribute(gl20, 1, "uv");
+
+            fntProgram.updateUniform(gl20, projMat4, "projectionMatrix");
+            fntProgram.updateUniform(gl20, transform().getModelMatrix(), "modelMatrix");
+            fntProgram.updateUniform(gl20, color, "color");
+            texture.bind(gl20, 0, fntProgram, "colorMap");
+            fntProgram.updateUniform(gl20, outlineColor, "outlineColor");
+            fntProgram.updateUniform(gl20, 1.0f / (float) texture.getImage().getWidth(), "unit");
+            fntProgram.updateUniform(gl20, (float) gameTime.getGameTicks(), "GameTime");
+
+            gl20.glDrawArrays(GL2.GL_TRIANGLES, 0, glyphCount * VERTICES_PER_GLYPH);
+
+            Texture.unbind(gl20, 0);
+
+            gl20.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+            gl20.glDisableVertexAttribArray(0);
+            gl20.glDisableVertexAttribArray(1);
+
+            ShaderProgram.unbind(gl20);
         }
     }
 
@@ -220,16 +291,7 @@ public class Text implements GLComponent {
             overlay.render(gl20, projMat4, prmProgram);
         }
 
-        if (enabled && buffered) {
-            int index = 0;
-            for (Quad quad : quadList) {
-                Pair<Float, Float> pair = pairList.get(index);
-                float xinc = pair.getKey();
-                float ydec = pair.getValue();
-                quad.render(gl20, xinc, ydec, projMat4, fntProgram);
-                index++;
-            }
-        }
+        render(gl20, projMat4, fntProgram);
     }
 
     @Override
@@ -262,16 +324,7 @@ public class Text implements GLComponent {
 
     @Override
     public Rectanglef getGLArea() {
-        Vector2f posGL = GLCoords.getOpenGLCoordinates(pos, GUI.GL_CANVAS.getWidth(), GUI.GL_CANVAS.getHeight());
-        float rw = getRelativeWidth();
-        float rh = getRelativeHeight();
-        Rectanglef rect = new Rectanglef(
-                posGL.x - rw,
-                posGL.y - rh,
-                posGL.x + rw,
-                posGL.y + rh
-        );
-        return rect;
+        return transform().getGLArea();
     }
 
     @Override
@@ -300,6 +353,16 @@ public class Text implements GLComponent {
         pos.y -= yrem;
     }
 
+    @Override
+    public boolean isIndexed() {
+        return false;
+    }
+
+    @Override
+    public Texture getCurrentTexture() {
+        return texture;
+    }
+
     @Override
     public Type getType() {
         return type;
@@ -376,6 +439,9 @@ public class Text implements GLComponent {
     }
 
     public void setTexture(Texture texture) {
+        if (this.texture != texture) {
+            buffered = false;
+        }
         this.texture = texture;
     }
 
@@ -384,10 +450,10 @@ public class Text implements GLComponent {
     }
 
     public void setContent(String content) {
-        this.content = content;
         if (!this.content.equals(content)) {
             buffered = false;
         }
+        this.content = content;
     }
 
     @Override
@@ -400,12 +466,8 @@ public class Text implements GLComponent {
         this.enabled = enabled;
     }
 
-    public List<Quad> getQuadList() {
-        return quadList;
-    }
-
-    public List<Pair<Float, Float>> getPairList() {
-        return pairList;
+    public int getGlyphCount() {
+        return glyphCount;
     }
 
     public float getAlignment() {
@@ -413,6 +475,9 @@ public class Text implements GLComponent {
     }
 
     public void setAlignment(float alignment) {
+        if (this.alignment != alignment) {
+            buffered = false;
+        }
         this.alignment = alignment;
     }
 
@@ -450,9 +515,9 @@ public class Text implements GLComponent {
 
     @Override
     public void setPos(Vector2f pos) {
+        // glyphs are laid out relative to the position (model matrix)
         this.pos = pos;
         this.overlay.setPos(pos);
-        buffered = false;
     }
 
     public void setScale(float scale) {
@@ -18,13 +18,10 @@ package rs.alexanderstojanovich.fo2ie.ogl;
 
 import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.util.GLBuffers;
-import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.ComponentColorModel;
@@ -39,14 +36,18 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
-import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 import javax.imageio.ImageIO;
+import rs.alexanderstojanovich.fo2ie.frm.ImageData;
+import rs.alexanderstojanovich.fo2ie.frm.Palette;
 import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
 import rs.alexanderstojanovich.fo2ie.main.GUI;
 import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
+import rs.alexanderstojanovich.fo2ie.util.MathUtils;
 
 /**
  *
@@ -54,12 +55,39 @@ import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
  */
 public class Texture {
 
-    public static final Map<String, Texture> TEXTURE_MAP = new HashMap<>();
-
     private final String filename;
     private final BufferedImage image;
     private int textureID = 0;
-
+    // palette texture (lookup) for palette-indexed textures, otherwise null
+    private final Texture paletteTexture;
+    // atlas page this texture is region of, otherwise null
+    private final Texture page;
+
+    // allocated (uploaded) texture dimension, image takes top left part of it
+    private int texWidth = 0;
+    private int texHeight = 0;
+    // texture coordinates of the image top left and bottom right corner
+    private float minU = 0.0f;
+    private float minV = 0.0f;
+    private float maxU = 1.0f;
+    private float maxV = 1.0f;
+    // bytes per texel of the allocated texture
+    private int texelSize = 4;
+
+    // number of owners (modules, texture cache, indexed textures), deleted at zero
+    private int refCount = 0;
+    // whether texels are on the graphic card (atlas region may be still queued)
+    private volatile boolean uploaded = true;
+
+    // diagnostics, textures alive on the graphic card and their memory
+    private static final AtomicInteger LIVE_COUNT = new AtomicInteger();
+    private static final AtomicLong LIVE_BYTES = new AtomicLong();
+
+    // textures with at least this many texels are color keyed in parallel (in row bands)
+    private static final int PARALLEL_KEY_TEXELS = 512 * 512;
+    private static final int KEY_BAND_ROWS = 64;
+
+    // max texture dimension, larger images are scaled down to it
     public static final int TEX_SIZE = Configuration.getInstance().getTextureSize();
 
     /**
@@ -72,28 +100,221 @@ public class Texture {
     public Texture(String filename, GL2 gl20, BufferedImage image) {
         this.filename = filename;
         this.image = image;
+        this.paletteTexture = null;
+        this.page = null;
         loadToGraphicCard(gl20);
     }
 
+    /**
+     * Creates a palette-indexed texture based on the indexed image data. Each
+     * texel is palette entry (one byte), colors are looked up in the shader
+     * from the palette texture.
+     *
+     * @param filename filename to identify this texture
+     * @param gl20 GL20 context
+     * @param frame indexed image data
+     * @param palette palette image data is indexed against
+     */
+    public Texture(String filename, GL2 gl20, ImageData frame, Palette palette) {
+        this.filename = filename;
+        this.image = frame.toIndexedImage(palette);
+        this.paletteTexture = loadPaletteTexture(gl20, palette).retain();
+        this.page = null;
+        loadIndexedToGraphicCard(gl20, frame.getData(), frame.getWidth(), frame.getHeight(), GL2.GL_LUMINANCE8, GL2.GL_LUMINANCE, 1, GL2.GL_NEAREST);
+    }
+
+    /**
+     * Creates empty (transparent) atlas page. Images are packed into it by the
+     * texture atlas and rendered as its regions.
+     *
+     * @param filename filename to identify this page
+     * @param gl20 GL20 context
+     * @param size page dimension
+     * @param palette palette of the packed frames or null for true color page
+     */
+    Texture(String filename, GL2 gl20, int size, Palette palette) {
+        this.filename = filename;
+        this.image = null;
+        this.page = null;
+        if (palette != null) {
+            this.paletteTexture = loadPaletteTexture(gl20, palette).retain();
+            loadIndexedToGraphicCard(gl20, new byte[size * size], size, size, GL2.GL_LUMINANCE8, GL2.GL_LUMINANCE, 1, GL2.GL_NEAREST);
+        } else {
+            this.paletteTexture = null;
+            loadIndexedToGraphicCard(gl20, new byte[size * size * 4], size, size, GL2.GL_RGBA8, GL2.GL_RGBA, 4, GL2.GL_LINEAR);
+        }
+    }
+
+    /**
+     * Creates region of the atlas page (image packed into the page). Region
+     * shares the page texture and owns the page.
+     *
+     * @param filename filename to identify this texture
+     * @param image image packed into the page
+     * @param page atlas page
+     * @param x left edge of the region in the page
+     * @param y top edge of the region in the page
+     */
+    Texture(String filename, BufferedImage image, Texture page, int x, int y) {
+        this.filename = filename;
+        this.image = image;
+        this.page = page.retain();
+        this.paletteTexture = page.paletteTexture;
+        this.texWidth = page.texWidth;
+        this.texHeight = page.texHeight;
+        this.texelSize = page.texelSize;
+        this.minU = x / (float) texWidth;
+        this.minV = y / (float) texHeight;
+        this.maxU = (x + image.getWidth()) / (float) texWidth;
+        this.maxV = (y + image.getHeight()) / (float) texHeight;
+    }
+
+    /**
+     * Creates 256x1 palette texture (color lookup for indexed textures)
+     *
+     * @param gl20 GL20 context
+     * @param palette palette
+     */
+    private Texture(GL2 gl20, Palette palette) {
+        this.filename = palette.getName();
+        ImageData entries = new ImageData(256, 1, 0, 0);
+        for (int i = 0; i < 256; i++) {
+            entries.setPixel(i, 0, (byte) i);
+        }
+        this.image = entries.toIndexedImage(palette);
+        this.paletteTexture = null;
+        this.page = null;
+
+        byte[] colBuff = palette.getColBuff();
+        // blue color removal (the same as for true color textures), once per palette
+        removeColorKey(colBuff, 256, 1, colBuff.length);
+        loadIndexedToGraphicCard(gl20, colBuff, 256, 1, GL2.GL_RGBA8, GL2.GL_RGBA, 4, GL2.GL_NEAREST);
+    }
+
     private void loadToGraphicCard(GL2 gl20) {
         IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
         gl20.glGenTextures(1, intBuffer);
         textureID = intBuffer.get(0);
 
         gl20.glBindTexture(GL2.GL_TEXTURE_2D, textureID);
-        // Set the texture wrapping parameters
-        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_REPEAT);// Set texture wrapping to GL_REPEAT (usually basic wrapping method)
-        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_REPEAT);
+        // Set the texture wrapping parameters (clamp, image may not fill the texture)
+        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP_TO_EDGE);
         // Set texture filtering parameters
         gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_LINEAR);
         gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_LINEAR);
 
+        // image dimension (limited by the texture size)
+        final int width = Math.max(Math.min(image.getWidth(), TEX_SIZE), 1);
+        final int height = Math.max(Math.min(image.getHeight(), TEX_SIZE), 1);
+        setDimension(gl20, width, height, 4);
+
         // get the content as ByteBuffer
-        ByteBuffer imageDataBuffer = getImageDataBuffer(image);
+        ByteBuffer imageDataBuffer = getImageDataBuffer(image, width, height, texWidth, texHeight);
 
         // glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels)        
-        gl20.glTexImage2D(GL2.GL_TEXTURE_2D, 0, GL2.GL_RGBA8, TEX_SIZE, TEX_SIZE, 0, GL2.GL_RGBA, GL2.GL_UNSIGNED_BYTE, imageDataBuffer);
+        gl20.glTexImage2D(GL2.GL_TEXTURE_2D, 0, GL2.GL_RGBA8, texWidth, texHeight, 0, GL2.GL_RGBA, GL2.GL_UNSIGNED_BYTE, imageDataBuffer);
+        UploadStats.add(getByteSize());
         gl20.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+        LIVE_COUNT.incrementAndGet();
+        LIVE_BYTES.addAndGet(getByteSize());
+    }
+
+    /**
+     * Sets allocated dimension of this texture for the image of given
+     * dimension. Texture is the size of the image or, if non power of two
+     * textures are not supported, the next power of two.
+     *
+     * @param gl20 GL20 context
+     * @param width image width
+     * @param height image height
+     * @param texelSize bytes per texel
+     */
+    private void setDimension(GL2 gl20, int width, int height, int texelSize) {
+        if (gl20.isNPOTTextureAvailable()) {
+            this.texWidth = width;
+            this.texHeight = height;
+        } else {
+            this.texWidth = MathUtils.nextPowerOfTwo(width);
+            this.texHeight = MathUtils.nextPowerOfTwo(height);
+        }
+        this.maxU = width / (float) texWidth;
+        this.maxV = height / (float) texHeight;
+        this.texelSize = texelSize;
+    }
+
+    // uploads raw texels, palette entries require nearest filtering (cannot be interpolated)
+    private void loadIndexedToGraphicCard(GL2 gl20, byte[] texels, int width, int height, int internalFormat, int format, int texelSize, int filter) {
+        setDimension(gl20, Math.max(width, 1), Math.max(height, 1), texelSize);
+        // pad rows (and add rows) up to the allocated dimension
+        final byte[] content = new byte[texWidth * texHeight * texelSize];
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(texels, row * width * texelSize, content, row * texWidth * texelSize, width * texelSize);
+        }
+
+        IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
+        gl20.glGenTextures(1, intBuffer);
+        textureID = intBuffer.get(0);
+
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, textureID);
+        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP_TO_EDGE);
+        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, filter);
+        gl20.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, filter);
+
+        // rows of the frame are tightly packed (not aligned to four bytes)
+        gl20.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 1);
+        gl20.glTexImage2D(GL2.GL_TEXTURE_2D, 0, internalFormat, texWidth, texHeight, 0, format, GL2.GL_UNSIGNED_BYTE, GLBuffers.newDirectByteBuffer(content));
+        UploadStats.add(content.length);
+        gl20.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 4);
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+        LIVE_COUNT.incrementAndGet();
+        LIVE_BYTES.addAndGet(getByteSize());
+    }
+
+    /**
+     * Uploads texels into the region of this (atlas page) texture from the
+     * bound pixel unpack buffer (transfer does not block)
+     *
+     * @param gl20 GL20 context
+     * @param x left edge of the region
+     * @param y top edge of the region
+     * @param width region width
+     * @param height region height
+     * @param offset offset of the texels in the bound pixel unpack buffer
+     */
+    void uploadRegion(GL2 gl20, int x, int y, int width, int height, long offset) {
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, textureID);
+        gl20.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 1);
+        gl20.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, x, y, width, height, getFormat(), GL2.GL_UNSIGNED_BYTE, offset);
+        UploadStats.add((long) texelSize * width * height);
+        gl20.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 4);
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Uploads texels into the region of this (atlas page) texture from the
+     * client memory (no pixel unpack buffer is bound)
+     *
+     * @param gl20 GL20 context
+     * @param x left edge of the region
+     * @param y top edge of the region
+     * @param width region width
+     * @param height region height
+     * @param texels texels (RGBA or palette entries, tightly packed)
+     */
+    void uploadRegion(GL2 gl20, int x, int y, int width, int height, ByteBuffer texels) {
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, textureID);
+        gl20.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 1);
+        gl20.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, x, y, width, height, getFormat(), GL2.GL_UNSIGNED_BYTE, texels);
+        UploadStats.add((long) texelSize * width * height);
+        gl20.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 4);
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+    }
+
+    // pixel format of the texels (palette entries or RGBA)
+    private int getFormat() {
+        return (texelSize == 1) ? GL2.GL_LUMINANCE : GL2.GL_RGBA;
     }
 
     /**
@@ -103,7 +324,7 @@ public class Texture {
      */
     public void bind(GL2 gl20) {
         gl20.glActiveTexture(GL2.GL_TEXTURE0);
-        gl20.glBindTexture(GL2.GL_TEXTURE_2D, textureID);
+        gl20.glBindTexture(GL2.GL_TEXTURE_2D, getTextureID());
     }
 
     /**
@@ -118,12 +339,87 @@ public class Texture {
     public void bind(GL2 gl20, int textureUnitNum, ShaderProgram shaderProgram, String textureUniformName) {
         if (textureUnitNum >= 0 && textureUnitNum <= 7) {
             gl20.glActiveTexture(GL2.GL_TEXTURE0 + textureUnitNum);
-            gl20.glBindTexture(GL2.GL_TEXTURE_2D, textureID);
-            int uniformLocation = gl20.glGetUniformLocation(shaderProgram.getProgramId(), textureUniformName);
-            gl20.glUniform1i(uniformLocation, textureUnitNum);
+            gl20.glBindTexture(GL2.GL_TEXTURE_2D, getTextureID());
+            shaderProgram.updateUniform(gl20, textureUnitNum, textureUniformName);
+            // palette is bound to the next texture unit
+            if (paletteTexture != null) {
+                paletteTexture.bind(gl20, textureUnitNum + 1, shaderProgram, "palette");
+            }
         }
     }
 
+    /**
+     * Adds owner to this texture. Textures held in the texture cache are owned
+     * by the cache until they are evicted.
+     *
+     * @return this texture
+     */
+    public synchronized Texture retain() {
+        refCount++;
+        return this;
+    }
+
+    /**
+     * Removes owner from this texture. When there are no owners left texture
+     * is deleted from the graphic card. Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     */
+    public synchronized void release(GL2 gl20) {
+        if (refCount > 0 && --refCount == 0) {
+            if (textureID != 0) {
+                IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(new int[]{textureID});
+                gl20.glDeleteTextures(1, intBuffer);
+                textureID = 0;
+                LIVE_COUNT.decrementAndGet();
+                LIVE_BYTES.addAndGet(-getByteSize());
+                if (paletteTexture != null) {
+                    paletteTexture.release(gl20);
+                }
+            }
+            // region lets go of its page (page is deleted with its last region)
+            if (page != null) {
+                page.release(gl20);
+            }
+        }
+    }
+
+    /**
+     * Gets number of owners of this texture
+     *
+     * @return reference count
+     */
+    public synchronized int getRefCount() {
+        return refCount;
+    }
+
+    /**
+     * Gets number of textures alive on the graphic card
+     *
+     * @return live texture count
+     */
+    public static int getLiveCount() {
+        return LIVE_COUNT.get();
+    }
+
+    /**
+     * Gets (video) memory of textures alive on the graphic card in bytes
+     *
+     * @return live texture bytes
+     */
+    public static long getLiveBytes() {
+        return LIVE_BYTES.get();
+    }
+
+    /**
+     * Gets diagnostics report of live textures
+     *
+     * @return live textures report
+     */
+    public static String getDiagnostics() {
+        return String.format("Live textures: %d, %d KB", getLiveCount(), getLiveBytes() / 1024);
+    }
+
     public static void unbind(GL2 gl20) {
         gl20.glActiveTexture(GL2.GL_TEXTURE0);
         gl20.glBindTexture(GL2.GL_TEXTURE_2D, 0);
@@ -137,13 +433,41 @@ public class Texture {
     }
 
     /**
-     * Gets content of this image as Byte Buffer (for textures)
+     * Gets content of this image as Byte Buffer (for textures). Image is
+     * placed in the top left corner of the texture, scaled only if its
+     * dimension differs from the given one.
      *
      * @param srcImg source image
+     * @param width image width in the texture
+     * @param height image height in the texture
+     * @param texWidth texture width
+     * @param texHeight texture height
      * @return content as byte buffer for creating texture
      */
-    public static ByteBuffer getImageDataBuffer(BufferedImage srcImg) {
-        ByteBuffer imageBuffer;
+    public static ByteBuffer getImageDataBuffer(BufferedImage srcImg, int width, int height, int texWidth, int texHeight) {
+        byte[] data = getImageData(srcImg, width, height, texWidth, texHeight);
+
+        ByteBuffer imageBuffer = ByteBuffer.allocateDirect(data.length);
+        imageBuffer.order(ByteOrder.nativeOrder());
+        imageBuffer.put(data, 0, data.length);
+        imageBuffer.flip();
+
+        return imageBuffer;
+    }
+
+    /**
+     * Gets content of this image as RGBA bytes (color key removed). Image is
+     * placed in the top left corner, scaled only if its dimension differs from
+     * the given one. Does not require GL context.
+     *
+     * @param srcImg source image
+     * @param width image width in the texture
+     * @param height image height in the texture
+     * @param texWidth texture width
+     * @param texHeight texture height
+     * @return RGBA bytes (rows of texture width)
+     */
+    static byte[] getImageData(BufferedImage srcImg, int width, int height, int texWidth, int texHeight) {
         WritableRaster raster;
         BufferedImage texImage;
 
@@ -152,50 +476,62 @@ public class Texture {
                 true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
 
         raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE,
-                TEX_SIZE, TEX_SIZE, 4, null);
+                texWidth, texHeight, 4, null);
         texImage = new BufferedImage(glAlphaColorModel, raster, false,
                 new Hashtable());
 
-        int width = srcImg.getWidth();
-        int height = srcImg.getHeight();
-        double sx = 1.0 / (1.0 + (width - TEX_SIZE) / (double) TEX_SIZE);
-        double sy = 1.0 / (1.0 + (height - TEX_SIZE) / (double) TEX_SIZE);
-
-        AffineTransform xform = new AffineTransform();
-        xform.scale(sx, sy);
-        AffineTransformOp atOp = new AffineTransformOp(xform, null);
-        final BufferedImage dstImg = atOp.filter(srcImg, null);
-
         // copy the source image into the produced image
         Graphics2D g2d = (Graphics2D) texImage.getGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-
-        g2d.setColor(new Color(0.0f, 0.0f, 0.0f, 0.0f));
-        g2d.drawImage(dstImg, 0, 0, null);
-
-        // blue color removal
-        for (int px = 0; px < texImage.getWidth(); px++) {
-            for (int py = 0; py < texImage.getHeight(); py++) {
-                Color pixCol = new Color(texImage.getRGB(px, py), true);
-                if (pixCol.equals(Color.BLUE)) {
-                    texImage.setRGB(px, py, 0);
-                }
-            }
+        if (width != srcImg.getWidth() || height != srcImg.getHeight()) {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
         }
+        g2d.drawImage(srcImg, 0, 0, width, height, null);
+        g2d.dispose();
 
         // build a byte buffer from the temporary image
         // that be used by OpenGL to produce a texture.
         byte[] data = ((DataBufferByte) texImage.getRaster().getDataBuffer())
                 .getData();
 
-        imageBuffer = ByteBuffer.allocateDirect(data.length);
-        imageBuffer.order(ByteOrder.nativeOrder());
-        imageBuffer.put(data, 0, data.length);
-        imageBuffer.flip();
+        // blue color removal (padding is already transparent)
+        removeColorKey(data, width, height, 4 * texWidth);
 
-        return imageBuffer;
+        return data;
+    }
+
+    /**
+     * Removes color key (opaque pure blue) from the RGBA texels, keyed texels
+     * become transparent black. Sweeps rows in order, large textures are swept
+     * in parallel (row bands).
+     *
+     * @param rgba texels (RGBA, byte per component)
+     * @param width width of the area to sweep (in texels)
+     * @param height height of the area to sweep (in texels)
+     * @param stride bytes per row
+     */
+    public static void removeColorKey(byte[] rgba, int width, int height, int stride) {
+        if ((long) width * height < PARALLEL_KEY_TEXELS) {
+            removeColorKey(rgba, width, 0, height, stride);
+        } else {
+            final int bands = (height + KEY_BAND_ROWS - 1) / KEY_BAND_ROWS;
+            IntStream.range(0, bands).parallel().forEach(band -> removeColorKey(rgba, width,
+                    band * KEY_BAND_ROWS, Math.min((band + 1) * KEY_BAND_ROWS, height), stride));
+        }
+    }
+
+    // removes color key from the rows [fromRow, toRow)
+    private static void removeColorKey(byte[] rgba, int width, int fromRow, int toRow, int stride) {
+        for (int row = fromRow; row < toRow; row++) {
+            final int end = row * stride + 4 * width;
+            for (int i = row * stride; i < end; i += 4) {
+                if (rgba[i] == 0 && rgba[i + 1] == 0 && rgba[i + 2] == (byte) 0xFF && rgba[i + 3] == (byte) 0xFF) {
+                    rgba[i + 2] = 0;
+                    rgba[i + 3] = 0;
+                }
+            }
+        }
     }
 
     /**
@@ -206,16 +542,16 @@ public class Texture {
      * @return loaded Texture
      */
     public static Texture loadLocalTexture(GL2 gl20, String filename) {
-        if (TEXTURE_MAP.containsKey(filename)) {
-            return TEXTURE_MAP.get(filename);
+        final TextureCache cache = TextureCache.getInstance();
+        Texture cached = cache.getPinned(filename);
+        if (cached != null) {
+            return cached;
         } else {
             InputStream is = Texture.class.getResourceAsStream(GUI.RESOURCES_DIR + filename);
             if (is != null) {
                 try {
                     BufferedImage rdImg = ImageIO.read(is);
-                    Texture tex = new Texture(filename, gl20, rdImg);
-                    TEXTURE_MAP.put(tex.filename, tex);
-                    return tex;
+                    return cache.pin(filename, new Texture(filename, gl20, rdImg));
                 } catch (IOException ex) {
                     FO2IELogger.reportError("Error while loading image " + filename + "!", null);
                     FO2IELogger.reportError(ex.getMessage(), ex);
@@ -237,40 +573,214 @@ public class Texture {
      * @return loaded Texture
      */
     public static Texture loadTexture(GL2 gl20, File file) {
-        if (TEXTURE_MAP.containsKey(file.getName())) {
-            return TEXTURE_MAP.get(file.getName());
-        } else {
-            if (file.exists()) {
-                try {
-                    InputStream is = new FileInputStream(file);
-                    BufferedImage rdImg = ImageIO.read(is);
-                    Texture tex = new Texture(file.getName(), gl20, rdImg);
-                    TEXTURE_MAP.put(tex.filename, tex);
-                    return tex;
-                } catch (IOException ex) {
-                    FO2IELogger.reportError("Error while loading image " + file.getName() + "!", null);
-                    FO2IELogger.reportError(ex.getMessage(), ex);
-                }
-            } else {
-                FO2IELogger.reportError("Cannot load texture " + file.getName() + "!", null);
+        if (file.exists()) {
+            try {
+                InputStream is = new FileInputStream(file);
+                BufferedImage rdImg = ImageIO.read(is);
+                return loadTexture(file, gl20, rdImg);
+            } catch (IOException ex) {
+                FO2IELogger.reportError("Error while loading image " + file.getName() + "!", null);
+                FO2IELogger.reportError(ex.getMessage(), ex);
             }
+        } else {
+            FO2IELogger.reportError("Cannot load texture " + file.getName() + "!", null);
         }
         return null;
     }
 
     /**
-     * Loads texture from the filesystem
+     * Loads texture from the image (loaded from the file). Texture is reused
+     * from the texture cache if the file content has not changed.
+     *
+     * @param file file image is loaded from
+     * @param gl20 provided GL2.0 binding
+     * @param image provided image for texture
+     * @return loaded Texture
+     */
+    public static Texture loadTexture(File file, GL2 gl20, BufferedImage image) {
+        return loadTexture(file, gl20, image, null);
+    }
+
+    /**
+     * Loads texture from the image (loaded from the file) packing it into the
+     * atlas if it fits. Texture is reused from the texture cache if the file
+     * content has not changed.
      *
-     * @param filename name for this texture (or from this image)
+     * @param file file image is loaded from
      * @param gl20 provided GL2.0 binding
      * @param image provided image for texture
+     * @param atlas atlas to pack image into (or null)
      * @return loaded Texture
      */
-    public static Texture loadTexture(String filename, GL2 gl20, BufferedImage image) {
-        if (TEXTURE_MAP.containsKey(filename)) {
-            return TEXTURE_MAP.get(filename);
+    public static Texture loadTexture(File file, GL2 gl20, BufferedImage image, TextureAtlas atlas) {
+        final TextureCache cache = TextureCache.getInstance();
+        final String key = TextureCache.key(file, TextureCache.fingerprint(image));
+        Texture cached = cache.get(key);
+        if (cached != null) {
+            return cached;
         } else {
-            return new Texture(filename, gl20, image);
+            Texture tex = (atlas != null) ? atlas.add(gl20, file.getName(), image) : null;
+            if (tex == null) {
+                tex = new Texture(file.getName(), gl20, image);
+            }
+            return cache.put(gl20, key, tex);
+        }
+    }
+
+    /**
+     * Loads 256x1 palette texture (shared by all textures indexed against the
+     * palette)
+     *
+     * @param gl20 provided GL2.0 binding
+     * @param palette palette
+     * @return loaded palette Texture
+     */
+    public static Texture loadPaletteTexture(GL2 gl20, Palette palette) {
+        final TextureCache cache = TextureCache.getInstance();
+        Texture cached = cache.getPinned(palette.getName());
+        if (cached != null) {
+            return cached;
+        } else {
+            return cache.pin(palette.getName(), new Texture(gl20, palette));
+        }
+    }
+
+    /**
+     * Loads palette-indexed texture from the indexed (FRM) frame. Texture is
+     * reused from the texture cache if the frame content has not changed.
+     *
+     * @param file file frame is loaded from
+     * @param gl20 provided GL2.0 binding
+     * @param frame indexed image data
+     * @param palette palette frame is indexed against
+     * @return loaded Texture
+     */
+    public static Texture loadTexture(File file, GL2 gl20, ImageData frame, Palette palette) {
+        return loadTexture(file, gl20, frame, palette, null);
+    }
+
+    /**
+     * Loads palette-indexed texture from the indexed (FRM) frame packing it
+     * into the atlas if it fits. Texture is reused from the texture cache if
+     * the frame content has not changed.
+     *
+     * @param file file frame is loaded from
+     * @param gl20 provided GL2.0 binding
+     * @param frame indexed image data
+     * @param palette palette frame is indexed against
+     * @param atlas atlas to pack frame into (or null)
+     * @return loaded Texture
+     */
+    public static Texture loadTexture(File file, GL2 gl20, ImageData frame, Palette palette, TextureAtlas atlas) {
+        final TextureCache cache = TextureCache.getInstance();
+        final String key = TextureCache.key(file, TextureCache.fingerprint(frame)) + "/" + palette.getName();
+        Texture cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        } else {
+            Texture tex = (atlas != null) ? atlas.add(gl20, file.getName(), frame, palette) : null;
+            if (tex == null) {
+                tex = new Texture(file.getName(), gl20, frame, palette);
+            }
+            return cache.put(gl20, key, tex);
+        }
+    }
+
+    /**
+     * Loads textures of the true color animation frames (loaded from the
+     * file), packed as one strip into the atlas, so all the frames are regions
+     * of the same page. Frames which do not fit as a strip are loaded one by
+     * one. Textures are reused from the texture cache if no frame has changed.
+     *
+     * @param file file frames are loaded from
+     * @param gl20 provided GL2.0 binding
+     * @param images animation frames
+     * @param atlas atlas to pack frames into (or null)
+     * @return loaded Textures (one per frame)
+     */
+    public static Texture[] loadAnimation(File file, GL2 gl20, BufferedImage[] images, TextureAtlas atlas) {
+        final TextureCache cache = TextureCache.getInstance();
+        long fingerprint = 0L;
+        for (BufferedImage image : images) {
+            fingerprint = 31L * fingerprint + TextureCache.fingerprint(image);
+        }
+        final String key = TextureCache.key(file, fingerprint) + "/strip";
+        Texture[] frames = getCachedFrames(cache, key, images.length);
+        if (frames == null) {
+            frames = (atlas != null) ? atlas.addStrip(gl20, file.getName(), images) : null;
+            if (frames == null) {
+                frames = new Texture[images.length];
+                for (int i = 0; i < images.length; i++) {
+                    frames[i] = (atlas != null) ? atlas.add(gl20, file.getName(), images[i]) : null;
+                    if (frames[i] == null) {
+                        frames[i] = new Texture(file.getName(), gl20, images[i]);
+                    }
+                }
+            }
+            putFrames(cache, gl20, key, frames);
+        }
+        return frames;
+    }
+
+    /**
+     * Loads palette-indexed textures of the animation (FRM) frames, packed as
+     * one strip into the atlas, so all the frames are regions of the same
+     * page. Frames which do not fit as a strip are loaded one by one.
+     * Textures are reused from the texture cache if no frame has changed.
+     *
+     * @param file file frames are loaded from
+     * @param gl20 provided GL2.0 binding
+     * @param frames indexed animation frames
+     * @param palette palette frames are indexed against
+     * @param atlas atlas to pack frames into (or null)
+     * @return loaded Textures (one per frame)
+     */
+    public static Texture[] loadAnimation(File file, GL2 gl20, ImageData[] frames, Palette palette, TextureAtlas atlas) {
+        final TextureCache cache = TextureCache.getInstance();
+        long fingerprint = 0L;
+        for (ImageData frame : frames) {
+            fingerprint = 31L * fingerprint + TextureCache.fingerprint(frame);
+        }
+        final String key = TextureCache.key(file, fingerprint) + "/" + palette.getName() + "/strip";
+        Texture[] textures = getCachedFrames(cache, key, frames.length);
+        if (textures == null) {
+            textures = (atlas != null) ? atlas.addStrip(gl20, file.getName(), frames, palette) : null;
+            if (textures == null) {
+                textures = new Texture[frames.length];
+                for (int i = 0; i < frames.length; i++) {
+                    textures[i] = (atlas != null) ? atlas.add(gl20, file.getName(), frames[i], palette) : null;
+                    if (textures[i] == null) {
+                        textures[i] = new Texture(file.getName(), gl20, frames[i], palette);
+                    }
+                }
+            }
+            putFrames(cache, gl20, key, textures);
+        }
+        return textures;
+    }
+
+    // cached frames of the animation (all of them) or null
+    private static Texture[] getCachedFrames(TextureCache cache, String key, int count) {
+        final Texture[] frames = new Texture[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = cache.get(key + "#" + i);
+            if (frames[i] == null) {
+                return null;
+            }
+        }
+        return frames;
+    }
+
+    private static void putFrames(TextureCache cache, GL2 gl20, String key, Texture[] frames) {
+        // held while putting, so putting one frame does not evict the others
+        for (Texture frame : frames) {
+            frame.retain();
+        }
+        for (int i = 0; i < frames.length; i++) {
+            cache.put(gl20, key + "#" + i, frames[i]);
+        }
+        for (Texture frame : frames) {
+            frame.release(gl20);
         }
     }
 
@@ -330,11 +840,116 @@ public class Texture {
     }
 
     public int getTextureID() {
-        return textureID;
+        return (page != null) ? page.textureID : textureID;
     }
 
     public String getFilename() {
         return filename;
     }
 
+    /**
+     * Gets memory report of this texture, allocated size against size of the
+     * fixed TEX_SIZE x TEX_SIZE RGBA texture.
+     *
+     * @return memory report
+     */
+    public String getMemoryReport() {
+        return String.format("Texture %s: %dx%d (%d byte(s) per texel) = %d KB, fixed %dx%d RGBA = %d KB",
+                filename, texWidth, texHeight, texelSize, getByteSize() / 1024,
+                TEX_SIZE, TEX_SIZE, (4L * TEX_SIZE * TEX_SIZE) / 1024);
+    }
+
+    /**
+     * Gets allocated (video) memory of this texture in bytes. For the atlas
+     * region that is its share of the page.
+     *
+     * @return texture byte size
+     */
+    public long getByteSize() {
+        if (page != null) {
+            return (long) image.getWidth() * image.getHeight() * texelSize;
+        }
+        return (long) texWidth * texHeight * texelSize;
+    }
+
+    public int getTexWidth() {
+        return texWidth;
+    }
+
+    public int getTexHeight() {
+        return texHeight;
+    }
+
+    /**
+     * Gets horizontal texture coordinate of the image left edge
+     *
+     * @return min U coordinate
+     */
+    public float getMinU() {
+        return minU;
+    }
+
+    /**
+     * Gets vertical texture coordinate of the image top edge
+     *
+     * @return min V coordinate
+     */
+    public float getMinV() {
+        return minV;
+    }
+
+    /**
+     * Gets horizontal texture coordinate of the image right edge
+     *
+     * @return max U coordinate
+     */
+    public float getMaxU() {
+        return maxU;
+    }
+
+    /**
+     * Gets vertical texture coordinate of the image bottom edge
+     *
+     * @return max V coordinate
+     */
+    public float getMaxV() {
+        return maxV;
+    }
+
+    public Texture getPaletteTexture() {
+        return paletteTexture;
+    }
+
+    /**
+     * Gets atlas page this texture is region of
+     *
+     * @return atlas page or null if this is not a region
+     */
+    public Texture getPage() {
+        return page;
+    }
+
+    /**
+     * Whether texels of this texture have landed on the graphic card (region
+     * queued for upload is drawn as the placeholder until then)
+     *
+     * @return is uploaded
+     */
+    public boolean isUploaded() {
+        return uploaded;
+    }
+
+    void setUploaded(boolean uploaded) {
+        this.uploaded = uploaded;
+    }
+
+    /**
+     * Whether texels are palette entries (requires palette shader program)
+     *
+     * @return is palette-indexed
+     */
+    public boolean isIndexed() {
+        return paletteTexture != null;
+    }
+
 }
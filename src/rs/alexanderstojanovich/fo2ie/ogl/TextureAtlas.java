@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import com.jogamp.opengl.GL2;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import rs.alexanderstojanovich.fo2ie.frm.ImageData;
+import rs.alexanderstojanovich.fo2ie.frm.Palette;
+
+/**
+ * Texture atlas of the module being built. Images (pictures, buttons,
+ * animation frames) are packed into few atlas pages, true color ones together
+ * and indexed ones per palette, so components share the page texture and
+ * differ only in texture coordinates. Pages are owned by their regions.
+ * Texels of the regions are queued to the texture uploader (page is allocated
+ * right away, regions land in the background).
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class TextureAtlas {
+
+    // transparent gutter right and below each image (no bleeding when filtering)
+    private static final int PADDING = 1;
+    private static final String TRUE_COLOR = "RGBA";
+
+    private final String name;
+    private final int pageSize;
+
+    // pages by format (true color or palette name)
+    private final Map<String, List<Page>> pages = new LinkedHashMap<>();
+
+    private int regionCount = 0;
+
+    private static class Page {
+
+        final Texture texture;
+        final SkylinePacker packer;
+
+        Page(Texture texture, int size) {
+            this.texture = texture;
+            this.packer = new SkylinePacker(size, size);
+        }
+    }
+
+    /**
+     * Creates new (empty) atlas
+     *
+     * @param name atlas name (page names are derived from it)
+     * @param pageSize page dimension
+     */
+    public TextureAtlas(String name, int pageSize) {
+        this.name = name;
+        this.pageSize = pageSize;
+    }
+
+    // page and position of the packed rectangle
+    private static class Placement {
+
+        final Page page;
+        final Point pos;
+
+        Placement(Page page, Point pos) {
+            this.page = page;
+            this.pos = pos;
+        }
+    }
+
+    /**
+     * Packs true color image into the atlas. Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     * @param filename filename to identify the texture
+     * @param image image to pack
+     * @return region texture or null if image does not fit into the page
+     */
+    public Texture add(GL2 gl20, String filename, BufferedImage image) {
+        Placement placement = place(gl20, TRUE_COLOR, null, image.getWidth(), image.getHeight());
+        if (placement == null) {
+            return null;
+        }
+        Texture region = new Texture(filename, image, placement.page.texture, placement.pos.x, placement.pos.y);
+        TextureUploader.getInstance().queue(region, placement.pos.x, placement.pos.y, image);
+        regionCount++;
+
+        return region;
+    }
+
+    /**
+     * Packs indexed frame into the atlas. Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     * @param filename filename to identify the texture
+     * @param frame indexed image data to pack
+     * @param palette palette frame is indexed against
+     * @return region texture or null if frame does not fit into the page
+     */
+    public Texture add(GL2 gl20, String filename, ImageData frame, Palette palette) {
+        Placement placement = place(gl20, palette.getName(), palette, frame.getWidth(), frame.getHeight());
+        if (placement == null) {
+            return null;
+        }
+        Texture region = new Texture(filename, frame.toIndexedImage(palette), placement.page.texture, placement.pos.x, placement.pos.y);
+        TextureUploader.getInstance().queue(region, placement.pos.x, placement.pos.y, frame);
+        regionCount++;
+
+        return region;
+    }
+
+    /**
+     * Packs true color animation frames into one strip (grid of equal cells,
+     * row by row) on one page. Each frame takes the top left part of its cell
+     * and its region is of its own size, so frames of the same size differ
+     * only in cell position. Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     * @param filename filename to identify the textures
+     * @param images animation frames
+     * @return frame region textures or null if the strip does not fit into the
+     * page
+     */
+    public Texture[] addStrip(GL2 gl20, String filename, BufferedImage[] images) {
+        int cellWidth = 0;
+        int cellHeight = 0;
+        for (BufferedImage image : images) {
+            cellWidth = Math.max(cellWidth, image.getWidth());
+            cellHeight = Math.max(cellHeight, image.getHeight());
+        }
+        final int columns = getStripColumns(images.length, cellWidth);
+        if (columns == 0) {
+            return null;
+        }
+        final int rows = (images.length + columns - 1) / columns;
+        Placement placement = place(gl20, TRUE_COLOR, null, columns * (cellWidth + PADDING) - PADDING, rows * (cellHeight + PADDING) - PADDING);
+        if (placement == null) {
+            return null;
+        }
+
+        final Texture[] frames = new Texture[images.length];
+        for (int i = 0; i < images.length; i++) {
+            final int x = placement.pos.x + (i % columns) * (cellWidth + PADDING);
+            final int y = placement.pos.y + (i / columns) * (cellHeight + PADDING);
+            frames[i] = new Texture(filename, images[i], placement.page.texture, x, y);
+            TextureUploader.getInstance().queue(frames[i], x, y, images[i]);
+        }
+        regionCount += images.length;
+
+        return frames;
+    }
+
+    /**
+     * Packs indexed animation frames into one strip (grid of equal cells, row
+     * by row) on one page. Each frame takes the top left part of its cell and
+     * its region is of its own size, so frames of the same size differ only
+     * in cell position. Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     * @param filename filename to identify the textures
+     * @param frames indexed animation frames
+     * @param palette palette frames are indexed against
+     * @return frame region textures or null if the strip does not fit into the
+     * page
+     */
+    public Texture[] addStrip(GL2 gl20, String filename, ImageData[] frames, Palette palette) {
+        int cellWidth = 0;
+        int cellHeight = 0;
+        for (ImageData frame : frames) {
+            cellWidth = Math.max(cellWidth, frame.getWidth());
+            cellHeight = Math.max(cellHeight, frame.getHeight());
+        }
+        final int columns = getStripColumns(frames.length, cellWidth);
+        if (columns == 0) {
+            return null;
+        }
+        final int rows = (frames.length + columns - 1) / columns;
+        Placement placement = place(gl20, palette.getName(), palette, columns * (cellWidth + PADDING) - PADDING, rows * (cellHeight + PADDING) - PADDING);
+        if (placement == null) {
+            return null;
+        }
+
+        final Texture[] regions = new Texture[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            final int x = placement.pos.x + (i % columns) * (cellWidth + PADDING);
+            final int y = placement.pos.y + (i / columns) * (cellHeight + PADDING);
+            regions[i] = new Texture(filename, frames[i].toIndexedImage(palette), placement.page.texture, x, y);
+            TextureUploader.getInstance().queue(regions[i], x, y, frames[i]);
+        }
+        regionCount += frames.length;
+
+        return regions;
+    }
+
+    // cells in a strip row (0 if even one cell does not fit into the page)
+    private int getStripColumns(int count, int cellWidth) {
+        if (count == 0 || cellWidth <= 0 || cellWidth + PADDING > pageSize) {
+            return 0;
+        }
+        return Math.min(count, pageSize / (cellWidth + PADDING));
+    }
+
+    // finds place for the rectangle on existing page of the format or on new one
+    private Placement place(GL2 gl20, String format, Palette palette, int width, int height) {
+        if (!fits(width, height)) {
+            return null;
+        }
+        for (Page page : getPages(format)) {
+            Point pos = page.packer.insert(width + PADDING, height + PADDING);
+            if (pos != null) {
+                return new Placement(page, pos);
+            }
+        }
+        Page page = newPage(gl20, format, palette);
+        Point pos = page.packer.insert(width + PADDING, height + PADDING);
+        return (pos != null) ? new Placement(page, pos) : null;
+    }
+
+    private boolean fits(int width, int height) {
+        return width > 0 && height > 0
+                && width + PADDING <= pageSize && height + PADDING <= pageSize;
+    }
+
+    private List<Page> getPages(String format) {
+        return pages.computeIfAbsent(format, f -> new ArrayList<>());
+    }
+
+    private Page newPage(GL2 gl20, String format, Palette palette) {
+        List<Page> list = getPages(format);
+        String pageName = name + " " + format + " #" + list.size();
+        Page page = new Page(new Texture(pageName, gl20, pageSize, palette), pageSize);
+        list.add(page);
+        return page;
+    }
+
+    /**
+     * Gets number of allocated atlas pages
+     *
+     * @return page count
+     */
+    public int getPageCount() {
+        int count = 0;
+        for (List<Page> list : pages.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets atlas report, pages and how full they are
+     *
+     * @return atlas report
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Texture atlas %s: %d region(s) in %d page(s) of %dx%d", name, regionCount, getPageCount(), pageSize, pageSize));
+        for (List<Page> list : pages.values()) {
+            for (Page page : list) {
+                sb.append(String.format(", %s %.0f%%", page.texture.getFilename(), 100.0f * page.packer.getOccupancy()));
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import com.jogamp.opengl.GL2;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import rs.alexanderstojanovich.fo2ie.frm.ImageData;
+import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
+
+/**
+ * Texture cache. Resource textures (font, qmark, palettes..) are pinned and
+ * live as long as the application. Image textures are kept in LRU order and
+ * when their memory exceeds the budget least recently used ones, which no
+ * module uses anymore, are evicted (released from the graphic card).
+ * Atlas region keeps its whole page alive, so the page is charged (once) while
+ * any of its regions is in the cache.
+ *
+ * Cache owns (retains) every texture it holds. Texture is looked up and put
+ * with current GL context.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class TextureCache {
+
+    private static final TextureCache INSTANCE = new TextureCache(Configuration.getInstance().getTextureBudget());
+
+    // resource textures, never evicted
+    private final Map<String, Texture> pinned = new HashMap<>();
+    // image textures in access order (eldest first)
+    private final LinkedHashMap<String, Texture> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // cached regions per atlas page (page is charged while it has any)
+    private final Map<Texture, Integer> pageRegions = new IdentityHashMap<>();
+
+    // max bytes of (image) textures in the cache
+    private final long budget;
+    private long bytes = 0L;
+
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+
+    private TextureCache(long budget) {
+        this.budget = budget;
+    }
+
+    public static TextureCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Makes cache key from the image file and the content it was loaded with
+     *
+     * @param file image file
+     * @param fingerprint content fingerprint
+     * @return cache key
+     */
+    public static String key(File file, long fingerprint) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException ex) {
+            path = file.getAbsolutePath();
+        }
+        return path + "@" + Long.toHexString(fingerprint);
+    }
+
+    /**
+     * Content fingerprint of the indexed (FRM) frame
+     *
+     * @param frame indexed image data
+     * @return CRC32 of the dimension and the texels
+     */
+    public static long fingerprint(ImageData frame) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(frame.getWidth()).putInt(frame.getHeight()).array());
+        crc.update(frame.getData());
+        return crc.getValue();
+    }
+
+    /**
+     * Content fingerprint of the (true color) image
+     *
+     * @param image image
+     * @return CRC32 of the dimension and the pixels
+     */
+    public static long fingerprint(BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(width).putInt(height).array());
+        int[] row = new int[width];
+        ByteBuffer rowBytes = ByteBuffer.allocate(width * 4);
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            rowBytes.clear();
+            rowBytes.asIntBuffer().put(row);
+            crc.update(rowBytes.array());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Gets pinned (resource) texture
+     *
+     * @param key resource name
+     * @return texture or null if not loaded
+     */
+    public synchronized Texture getPinned(String key) {
+        return pinned.get(key);
+    }
+
+    /**
+     * Pins (resource) texture, it is never evicted
+     *
+     * @param key resource name
+     * @param texture loaded texture
+     * @return that texture
+     */
+    public synchronized Texture pin(String key, Texture texture) {
+        pinned.put(key, texture.retain());
+        return texture;
+    }
+
+    /**
+     * Gets image texture marking it as most recently used
+     *
+     * @param key cache key
+     * @return texture or null if not in the cache
+     */
+    public synchronized Texture get(String key) {
+        Texture texture = entries.get(key);
+        if (texture != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return texture;
+    }
+
+    /**
+     * Puts loaded image texture into the cache and evicts least recently
+     * used textures over the budget (never the one being put, caller has not
+     * retained it yet). Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     * @param key cache key
+     * @param texture loaded texture
+     * @return that texture
+     */
+    public synchronized Texture put(GL2 gl20, String key, Texture texture) {
+        Texture old = entries.put(key, texture.retain());
+        if (old != null) {
+            discharge(old);
+            old.release(gl20);
+        }
+        charge(texture);
+        trim(gl20, key);
+        return texture;
+    }
+
+    /**
+     * Evicts least recently used textures (owned only by the cache) while
+     * cache is over the budget. Requires current GL context.
+     *
+     * @param gl20 GL2.0 binding
+     */
+    public synchronized void trim(GL2 gl20) {
+        trim(gl20, null);
+    }
+
+    // evicts textures over the budget except the one of the kept key
+    private void trim(GL2 gl20, String keptKey) {
+        Iterator<Map.Entry<String, Texture>> it = entries.entrySet().iterator();
+        while (bytes > budget && it.hasNext()) {
+            Map.Entry<String, Texture> entry = it.next();
+            Texture texture = entry.getValue();
+            // still used by some module (or just put), evicting it would not free anything
+            if (texture.getRefCount() > 1 || entry.getKey().equals(keptKey)) {
+                continue;
+            }
+            it.remove();
+            discharge(texture);
+            texture.release(gl20);
+            evictions++;
+        }
+    }
+
+    // adds memory the texture keeps on the graphic card (whole page for the region)
+    private void charge(Texture texture) {
+        final Texture page = texture.getPage();
+        if (page == null) {
+            bytes += texture.getByteSize();
+        } else if (pageRegions.merge(page, 1, Integer::sum) == 1) {
+            bytes += page.getByteSize();
+        }
+    }
+
+    // subtracts memory of the texture (page is freed with its last cached region)
+    private void discharge(Texture texture) {
+        final Texture page = texture.getPage();
+        if (page == null) {
+            bytes -= texture.getByteSize();
+        } else if (pageRegions.merge(page, -1, Integer::sum) == 0) {
+            pageRegions.remove(page);
+            bytes -= page.getByteSize();
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Gets cache statistics report
+     *
+     * @return statistics report
+     */
+    public synchronized String getStatistics() {
+        return String.format("Texture cache: %d textures, %d KB / %d KB, hits %d, misses %d, evictions %d",
+                entries.size(), bytes / 1024, budget / 1024, hits, misses, evictions);
+    }
+
+}
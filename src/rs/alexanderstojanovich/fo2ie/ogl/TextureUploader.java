@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.util.GLBuffers;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import rs.alexanderstojanovich.fo2ie.frm.ImageData;
+import rs.alexanderstojanovich.fo2ie.intrface.Configuration;
+import rs.alexanderstojanovich.fo2ie.util.FO2IELogger;
+
+/**
+ * Uploads atlas regions to the graphic card in the background. Building the
+ * module only places the regions and queues their texels, so it does not wait
+ * for the graphic card. Each frame the GL thread maps pixel buffers (PBO) for
+ * the queued regions, worker threads convert the images into the mapped
+ * memory and on the following frames the GL thread issues non-blocking
+ * transfers from the filled buffers into the atlas pages, a bounded number
+ * per frame. Region is drawn as the placeholder until its texels land.
+ * Whichever renderer runs drains the uploader (contexts are shared), issued
+ * transfers are flushed so the other context samples landed texels.
+ *
+ * Uploader owns (retains) the queued region until it is uploaded. Uploads are
+ * cancelled when the module is built again; region of the cancelled upload is
+ * dropped unless it is still owned (cached for the next build). Regions of the
+ * build in progress are never dropped, they are not owned by the module (or
+ * the cache) yet.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class TextureUploader {
+
+    private static final TextureUploader INSTANCE = new TextureUploader(Configuration.getInstance().getUploadsPerFrame());
+
+    // regions which transfer is issued per frame
+    private final int uploadsPerFrame;
+    // pixel buffers mapped (being filled) at once
+    private final int maxInFlight;
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1), r -> {
+        Thread thread = new Thread(r, "Texture Uploader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // waiting for the pixel buffer (in order of queueing)
+    private final Deque<Upload> queued = new ArrayDeque<>();
+    // pixel buffer mapped, being filled or filled (GL thread only)
+    private final List<Upload> inFlight = new ArrayList<>();
+    // pixel buffers not in use
+    private final Deque<Integer> freeBuffers = new ArrayDeque<>();
+
+    // incremented on cancel, uploads queued before are cancelled
+    private int generation = 0;
+
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    private static class Upload {
+
+        final Texture region;
+        final int generation;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        // exactly one of these is the source
+        final BufferedImage image;
+        final ImageData frame;
+
+        int buffer = 0;
+        boolean mapped = false;
+        ByteBuffer texels;
+        volatile boolean filled = false;
+        volatile boolean failed = false;
+
+        Upload(Texture region, int generation, int x, int y, int width, int height, BufferedImage image, ImageData frame) {
+            this.region = region;
+            this.generation = generation;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.image = image;
+            this.frame = frame;
+        }
+
+        int getByteSize() {
+            return width * height * ((frame != null) ? 1 : 4);
+        }
+    }
+
+    private TextureUploader(int uploadsPerFrame) {
+        this.uploadsPerFrame = uploadsPerFrame;
+        this.maxInFlight = 2 * uploadsPerFrame;
+    }
+
+    public static TextureUploader getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues true color image to be uploaded into the atlas region. Does not
+     * require GL context.
+     *
+     * @param region region of the atlas page
+     * @param x left edge of the region in the page
+     * @param y top edge of the region in the page
+     * @param image image to upload
+     */
+    public synchronized void queue(Texture region, int x, int y, BufferedImage image) {
+        region.retain().setUploaded(false);
+        queued.add(new Upload(region, generation, x, y, image.getWidth(), image.getHeight(), image, null));
+    }
+
+    /**
+     * Queues indexed frame to be uploaded into the atlas region (of the
+     * indexed page). Does not require GL context.
+     *
+     * @param region region of the atlas page
+     * @param x left edge of the region in the page
+     * @param y top edge of the region in the page
+     * @param frame indexed image data to upload
+     */
+    public synchronized void queue(Texture region, int x, int y, ImageData frame) {
+        region.retain().setUploaded(false);
+        queued.add(new Upload(region, generation, x, y, frame.getWidth(), frame.getHeight(), null, frame));
+    }
+
+    /**
+     * Cancels uploads queued so far (module is built again). Does not require
+     * GL context.
+     */
+    public synchronized void cancel() {
+        generation++;
+    }
+
+    // cancelled and the region is not owned by anyone else (build which queued it is over)
+    private boolean isDropped(Upload upload) {
+        return upload.generation != generation && upload.region.getRefCount() == 1;
+    }
+
+    /**
+     * Issues transfers of the filled pixel buffers (bounded number) and maps
+     * pixel buffers for the queued regions. Call it once per frame with
+     * current GL context (of any renderer drawing the module).
+     *
+     * @param gl20 GL2 binding
+     * @return number of regions uploaded
+     */
+    public synchronized int upload(GL2 gl20) {
+        int count = 0;
+        // filled ones, not necessarily in order of queueing
+        Iterator<Upload> it = inFlight.iterator();
+        while (it.hasNext() && count < uploadsPerFrame) {
+            Upload upload = it.next();
+            if (upload.filled) {
+                it.remove();
+                if (finish(gl20, upload)) {
+                    count++;
+                }
+            }
+        }
+        // regions may be sampled from the other (shared) context
+        if (count > 0) {
+            gl20.glFlush();
+        }
+
+        while (inFlight.size() < maxInFlight && !queued.isEmpty()) {
+            Upload upload = queued.poll();
+            // region dropped before it landed
+            if (isDropped(upload)) {
+                upload.region.release(gl20);
+                dropped.incrementAndGet();
+                continue;
+            }
+            start(gl20, upload);
+            inFlight.add(upload);
+        }
+
+        return count;
+    }
+
+    // maps pixel buffer for the upload and lets worker fill it
+    private void start(GL2 gl20, Upload upload) {
+        if (freeBuffers.isEmpty()) {
+            IntBuffer intBuffer = GLBuffers.newDirectIntBuffer(1);
+            gl20.glGenBuffers(1, intBuffer);
+            upload.buffer = intBuffer.get(0);
+        } else {
+            upload.buffer = freeBuffers.pop();
+        }
+        gl20.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, upload.buffer);
+        // orphan previous contents (driver does not wait for the last transfer)
+        gl20.glBufferData(GL2.GL_PIXEL_UNPACK_BUFFER, upload.getByteSize(), null, GL2.GL_STREAM_DRAW);
+        upload.texels = gl20.glMapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, GL2.GL_WRITE_ONLY);
+        upload.mapped = upload.texels != null;
+        gl20.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+
+        workers.execute(() -> fill(upload));
+    }
+
+    // converts texels into the mapped memory (worker thread)
+    private static void fill(Upload upload) {
+        try {
+            // buffer could not be mapped, texels are uploaded from the client memory
+            ByteBuffer texels = convert(upload, upload.texels);
+            if (texels != null) {
+                upload.texels = texels;
+            } else {
+                upload.failed = true;
+            }
+        } finally {
+            upload.filled = true;
+        }
+    }
+
+    // converts texels of the upload into the buffer (new one in the client memory if null)
+    private static ByteBuffer convert(Upload upload, ByteBuffer buffer) {
+        try {
+            ByteBuffer texels = (buffer != null) ? buffer : GLBuffers.newDirectByteBuffer(upload.getByteSize());
+            texels.clear();
+            if (upload.frame != null) {
+                texels.put(upload.frame.getData(), 0, upload.getByteSize());
+            } else {
+                texels.put(Texture.getImageData(upload.image, upload.width, upload.height, upload.width, upload.height));
+            }
+            texels.flip();
+            return texels;
+        } catch (RuntimeException ex) {
+            FO2IELogger.reportError(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    // unmaps pixel buffer and issues transfer into the page (GL thread)
+    private boolean finish(GL2 gl20, Upload upload) {
+        final Texture page = upload.region.getPage();
+        gl20.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, upload.buffer);
+        // contents of the mapped buffer may be lost (unmap fails)
+        final boolean intact = !upload.mapped || gl20.glUnmapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER);
+        boolean landed = false;
+        if (!isDropped(upload)) {
+            if (intact && !upload.failed) {
+                if (upload.mapped) {
+                    page.uploadRegion(gl20, upload.x, upload.y, upload.width, upload.height, 0L);
+                } else {
+                    gl20.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+                    page.uploadRegion(gl20, upload.x, upload.y, upload.width, upload.height, upload.texels);
+                }
+                landed = true;
+            } else {
+                // filling failed or contents were lost, texels are converted and uploaded here
+                gl20.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+                ByteBuffer texels = convert(upload, null);
+                if (texels != null) {
+                    page.uploadRegion(gl20, upload.x, upload.y, upload.width, upload.height, texels);
+                    landed = true;
+                }
+            }
+        }
+        if (landed) {
+            upload.region.setUploaded(true);
+            uploaded.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        gl20.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+        freeBuffers.push(upload.buffer);
+        upload.texels = null;
+        upload.region.release(gl20);
+
+        return landed;
+    }
+
+    /**
+     * Whether any region is still waiting to be uploaded
+     *
+     * @return is upload pending
+     */
+    public synchronized boolean isPending() {
+        return !queued.isEmpty() || !inFlight.isEmpty();
+    }
+
+    /**
+     * Gets number of regions waiting to be uploaded
+     *
+     * @return pending region count
+     */
+    public synchronized int getPendingCount() {
+        return queued.size() + inFlight.size();
+    }
+
+    /**
+     * Gets uploader report (regions uploaded and dropped so far)
+     *
+     * @return uploader report
+     */
+    public String getReport() {
+        return String.format("Texture uploads: %d uploaded, %d dropped, %d pending", uploaded.get(), dropped.get(), getPendingCount());
+    }
+
+}
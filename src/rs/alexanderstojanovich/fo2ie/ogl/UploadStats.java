@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.fo2ie.ogl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts bytes uploaded to the graphic card (buffer data and textures) and
+ * their rate per second.
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class UploadStats {
+
+    private static final long SECOND = 1000000000L; // in nanoseconds
+
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+
+    private static long sampleTime = System.nanoTime();
+    private static long sampleBytes = 0L;
+    private static long bytesPerSecond = 0L;
+
+    /**
+     * Adds uploaded bytes
+     *
+     * @param bytes number of bytes uploaded
+     */
+    public static void add(long bytes) {
+        TOTAL_BYTES.addAndGet(bytes);
+    }
+
+    /**
+     * Gets bytes uploaded since the start
+     *
+     * @return total uploaded bytes
+     */
+    public static long getTotalBytes() {
+        return TOTAL_BYTES.get();
+    }
+
+    /**
+     * Takes new sample of the upload rate if at least one second has passed
+     * since the last one. Call it regularly (once per frame).
+     *
+     * @return whether new sample has been taken
+     */
+    public static synchronized boolean sample() {
+        final long now = System.nanoTime();
+        final long elapsed = now - sampleTime;
+        if (elapsed >= SECOND) {
+            final long total = TOTAL_BYTES.get();
+            bytesPerSecond = (total - sampleBytes) * SECOND / elapsed;
+            sampleBytes = total;
+            sampleTime = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets upload rate of the last sample
+     *
+     * @return bytes uploaded per second
+     */
+    public static synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Gets upload report
+     *
+     * @return upload report
+     */
+    public static String getReport() {
+        return String.format("Uploaded: %d KB/s, total %d KB", getBytesPerSecond() / 1024, getTotalBytes() / 1024);
+    }
+
+}
@@ -0,0 +1,63 @@
+#version 110
+
+varying vec2 uvOut;
+
+const vec3 LUMA = vec3(0.2126, 0.7152, 0.0722);
+
+uniform float unit;
+uniform vec4 outlineColor;
+uniform vec4 color;
+uniform sampler2D colorMap; // palette entries (luminance)
+uniform sampler2D palette; // 256x1 palette colors
+uniform float GameTime;
+
+vec4 texel(vec2 texCoords) {
+	float entry = texture2D(colorMap, texCoords).r;
+	return texture2D(palette, vec2((entry * 255.0 + 0.5) / 256.0, 0.5));
+}
+
+vec3 cvet(vec2 texCoords, vec3 inCol) {	
+	float v = (texCoords.y - unit) / (1.0 - unit);
+	v += 1.0 - 0.75 * mod(1.75 * GameTime, 2.0);
+	if(v > 1.0) {
+		v = 2.0 - v;
+	} else if(v < 0.0) {
+		v = -v;
+	}	
+	vec3 outCol = vec3(v * 0.3 + 0.15) * inCol / (vec3(1.0) + inCol);
+	
+	return outCol;
+}
+
+float check(vec2 texCoords, float offset) {
+	float chk = (
+		texel(vec2(texCoords.x + offset, texCoords.y)).a +
+		texel(vec2(texCoords.x, texCoords.y - offset)).a +
+		texel(vec2(texCoords.x - offset, texCoords.y)).a +
+		texel(vec2(texCoords.x, texCoords.y + offset)).a + 
+		
+		texel(vec2(texCoords.x + offset, texCoords.y + offset)).a +
+		texel(vec2(texCoords.x + offset, texCoords.y - offset)).a +
+		texel(vec2(texCoords.x - offset, texCoords.y + offset)).a +
+		texel(vec2(texCoords.x - offset, texCoords.y - offset)).a
+	) / 8.0;
+	
+	return chk;
+}
+
+
+void main() {    
+	vec4 texColor = texel(uvOut);
+	float check = check(uvOut, unit);	
+	
+	if (texColor.a == 1.0) {
+		gl_FragColor.rgb = cvet(uvOut, outlineColor.rgb * vec3(dot(LUMA, color.rgb * texColor.rgb)));
+		gl_FragColor.a = outlineColor.a;
+	} else if (texColor.a < 1.0 && check > 0.0) {
+		gl_FragColor.rgb = cvet(uvOut, outlineColor.rgb);
+		gl_FragColor.a = outlineColor.a;
+	} else {
+		gl_FragColor = color * texColor;	
+	}    	
+		
+}
\ No newline at end of file
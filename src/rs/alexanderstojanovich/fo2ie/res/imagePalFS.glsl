@@ -0,0 +1,13 @@
+#version 110
+
+varying vec2 uvOut;
+
+uniform vec4 color;
+uniform sampler2D colorMap; // palette entries (luminance)
+uniform sampler2D palette; // 256x1 palette colors
+
+void main() {    
+	float entry = texture2D(colorMap, uvOut).r;
+	vec4 texColor = texture2D(palette, vec2((entry * 255.0 + 0.5) / 256.0, 0.5));
+    gl_FragColor = color * texColor;	
+}
\ No newline at end of file
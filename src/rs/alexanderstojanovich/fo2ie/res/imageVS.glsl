@@ -8,7 +8,16 @@ varying vec2 uvOut;
 uniform mat4 modelMatrix;
 uniform mat4 projectionMatrix;
 
+// animation strip: frame index and grid of the frames (cell U, cell V, columns)
+uniform float frame;
+uniform vec3 frameGrid;
+
 void main() {						
     gl_Position = projectionMatrix * modelMatrix * vec4(pos, 0.0, 1.0);                        
-    uvOut = uv;    
+    uvOut = uv;
+    if (frameGrid.z > 0.0) {
+        float row = floor((frame + 0.5) / frameGrid.z);
+        float col = frame - row * frameGrid.z;
+        uvOut += vec2(col * frameGrid.x, row * frameGrid.y);
+    }
 }
\ No newline at end of file
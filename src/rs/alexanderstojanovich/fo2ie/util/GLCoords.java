@@ -33,10 +33,23 @@ public class GLCoords {
      * @return OpenGL coordinates
      */
     public static Vector2f getOpenGLCoordinates(Vector2f scrnCoords, int scrnWidth, int scrnHeight) {
-        float xposGL = (float) (scrnCoords.x / (float) scrnWidth - 0.5f) * 2.0f;
-        float yposGL = (float) (0.5f - scrnCoords.y / (float) scrnHeight) * 2.0f;
+        return getOpenGLCoordinates(scrnCoords, scrnWidth, scrnHeight, new Vector2f());
+    }
+
+    /**
+     * Gets OpenGL coordinates of this screen coordinates (without allocation)
+     *
+     * @param scrnCoords vector containing screen coordinates
+     * @param scrnWidth screen width
+     * @param scrnHeight screen height
+     * @param dest vector to store OpenGL coordinates in
+     * @return dest
+     */
+    public static Vector2f getOpenGLCoordinates(Vector2f scrnCoords, int scrnWidth, int scrnHeight, Vector2f dest) {
+        float xposGL = (scrnCoords.x / scrnWidth - 0.5f) * 2.0f;
+        float yposGL = (0.5f - scrnCoords.y / scrnHeight) * 2.0f;
 
-        return new Vector2f(xposGL, yposGL);
+        return dest.set(xposGL, yposGL);
     }
 
     /**
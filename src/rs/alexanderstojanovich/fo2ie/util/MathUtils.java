@@ -101,4 +101,14 @@ public class MathUtils {
         return (1 - t) * v0 + t * v1;
     }
 
+    /**
+     * Smallest power of two greater than or equal to the value
+     *
+     * @param x value (positive)
+     * @return next power of two
+     */
+    public static int nextPowerOfTwo(int x) {
+        return (x <= 1) ? 1 : Integer.highestOneBit(x - 1) << 1;
+    }
+
 }